@@ -6,6 +6,7 @@ plugins {
     id("fabric-loom") version "0.2.7-SNAPSHOT"
     id("ca.stellardrift.opinionated") version "2.0.1"
     id("ca.stellardrift.opinionated.publish") version "2.0.1"
+    id("me.champeau.gradle.jmh") version "0.5.0"
 }
 
 val versionBase = "1.1-SNAPSHOT"
@@ -48,6 +49,21 @@ tasks.processResources {
     expand("project" to project)
 }
 
+sourceSets.named("jmh") {
+    compileClasspath += sourceSets.main.get().compileClasspath
+    runtimeClasspath += sourceSets.main.get().runtimeClasspath
+}
+
+jmh {
+    jmhVersion = "1.23"
+    resultFormat = "JSON"
+    resultsFile = file("$buildDir/reports/jmh/results.json")
+}
+
+tasks.test {
+    useJUnitPlatform()
+}
+
 dependencies {
     minecraft("com.mojang:minecraft:$versionMinecraft")
     mappings("net.fabricmc:yarn:$versionMinecraft+build.$versionMappings:v2")
@@ -63,6 +79,9 @@ dependencies {
 
     include("com.typesafe:config:1.4.0")
     apiInclude(configurate("gson", versionConfigurate)) { isTransitive = false }
+
+    testImplementation("org.junit.jupiter:junit-jupiter-api:5.6.2")
+    testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:5.6.2")
     // For test commands
     // listOf("commands-v0", "api-base").forEach {
     //     implementationInclude("net.fabricmc.fabric-api:fabric-$it:$versionFabricApi")
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.nbt.ByteArrayTag;
+import net.minecraft.nbt.ByteTag;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.DoubleTag;
+import net.minecraft.nbt.FloatTag;
+import net.minecraft.nbt.IntTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.StringTag;
+
+import java.util.Random;
+
+/**
+ * Shared setup and sample data for benchmarks.
+ */
+public final class BenchmarkSupport {
+    /**
+     * The data version of Minecraft 1.12.2, used for data that will be upgraded by DataFixers.
+     */
+    static final int LEGACY_DATA_VERSION = 1343;
+
+    private static final String[] LEGACY_ITEMS = {"minecraft:stone", "minecraft:planks", "minecraft:wool", "minecraft:diamond_sword",
+            "minecraft:torch", "minecraft:log", "minecraft:dye", "minecraft:cooked_beef"};
+    private static final String[] BLOCK_STATES = {"minecraft:stone", "minecraft:dirt", "minecraft:granite", "minecraft:diorite",
+            "minecraft:iron_ore", "minecraft:coal_ore", "minecraft:gravel", "minecraft:water"};
+
+    private static boolean initialized;
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Initialize Minecraft's registries and Confabricate's serializers, if this has not already happened in this VM.
+     */
+    public static synchronized void bootstrap() {
+        if (!initialized) {
+            Bootstrap.initialize();
+            new Confabricate().onInitialize();
+            initialized = true;
+        }
+    }
+
+    /**
+     * Create player data in the 1.12.2 format, with full inventory and ender chest contents.
+     *
+     * @return The player's data
+     */
+    static CompoundTag legacyPlayerData() {
+        final Random rand = new Random(42);
+        final CompoundTag player = new CompoundTag();
+        player.put("Pos", doubles(rand.nextDouble() * 1000, 64, rand.nextDouble() * 1000));
+        player.put("Motion", doubles(0, -0.0784, 0));
+        final ListTag rotation = new ListTag();
+        rotation.add(FloatTag.of(rand.nextFloat() * 360));
+        rotation.add(FloatTag.of(0));
+        player.put("Rotation", rotation);
+        player.putFloat("Health", 20f);
+        player.putShort("Air", (short) 300);
+        player.putInt("XpLevel", 30);
+        player.putInt("foodLevel", 20);
+        player.putLong("UUIDMost", rand.nextLong());
+        player.putLong("UUIDLeast", rand.nextLong());
+        player.putInt("Dimension", 0);
+        player.put("Inventory", legacyItems(rand, 36));
+        player.put("EnderItems", legacyItems(rand, 27));
+        return player;
+    }
+
+    private static ListTag legacyItems(Random rand, int count) {
+        final ListTag items = new ListTag();
+        for (int i = 0; i < count; ++i) {
+            final CompoundTag item = new CompoundTag();
+            item.putByte("Slot", (byte) i);
+            item.putString("id", LEGACY_ITEMS[rand.nextInt(LEGACY_ITEMS.length)]);
+            item.putByte("Count", (byte) (1 + rand.nextInt(64)));
+            item.putShort("Damage", (short) rand.nextInt(16));
+            if (rand.nextInt(4) == 0) {
+                final CompoundTag tag = new CompoundTag();
+                final CompoundTag display = new CompoundTag();
+                display.putString("Name", "Item " + i);
+                tag.put("display", display);
+                final ListTag enchantments = new ListTag();
+                final CompoundTag enchantment = new CompoundTag();
+                enchantment.putShort("id", (short) 16);
+                enchantment.putShort("lvl", (short) 5);
+                enchantments.add(enchantment);
+                tag.put("ench", enchantments);
+                item.put("tag", tag);
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Create chunk data in the current format, with 16 populated sections.
+     *
+     * @return The chunk's data
+     */
+    static CompoundTag chunkData() {
+        final Random rand = new Random(42);
+        final CompoundTag level = new CompoundTag();
+        level.putInt("xPos", 12);
+        level.putInt("zPos", -4);
+        level.putLong("LastUpdate", 123456L);
+        level.putLong("InhabitedTime", 5000L);
+        level.putString("Status", "full");
+
+        final int[] biomes = new int[1024];
+        for (int i = 0; i < biomes.length; ++i) {
+            biomes[i] = rand.nextInt(8);
+        }
+        level.putIntArray("Biomes", biomes);
+
+        final CompoundTag heightmaps = new CompoundTag();
+        for (String type : new String[] {"MOTION_BLOCKING", "MOTION_BLOCKING_NO_LEAVES", "OCEAN_FLOOR", "WORLD_SURFACE"}) {
+            heightmaps.putLongArray(type, longs(rand, 37));
+        }
+        level.put("Heightmaps", heightmaps);
+
+        final ListTag sections = new ListTag();
+        for (int y = 0; y < 16; ++y) {
+            final CompoundTag section = new CompoundTag();
+            section.put("Y", ByteTag.of((byte) y));
+            final ListTag palette = new ListTag();
+            for (String state : BLOCK_STATES) {
+                final CompoundTag entry = new CompoundTag();
+                entry.put("Name", StringTag.of(state));
+                if (state.equals("minecraft:water")) {
+                    final CompoundTag properties = new CompoundTag();
+                    properties.putString("level", "0");
+                    entry.put("Properties", properties);
+                }
+                palette.add(entry);
+            }
+            section.put("Palette", palette);
+            section.putLongArray("BlockStates", longs(rand, 256));
+            final byte[] light = new byte[2048];
+            rand.nextBytes(light);
+            section.put("SkyLight", new ByteArrayTag(light.clone()));
+            section.put("BlockLight", new ByteArrayTag(light));
+            sections.add(section);
+        }
+        level.put("Sections", sections);
+        level.put("Entities", new ListTag());
+        level.put("TileEntities", new ListTag());
+
+        final CompoundTag chunk = new CompoundTag();
+        chunk.put("Level", level);
+        chunk.putInt("DataVersion", 2230);
+        return chunk;
+    }
+
+    /**
+     * Create structure template data for a cube of blocks, the kind of large tag parallel conversion is meant for.
+     *
+     * @param size The length of each side of the cube
+     * @return The structure's data, with {@code size}<sup>3</sup> entries in its block list
+     */
+    static CompoundTag structureData(int size) {
+        final Random rand = new Random(42);
+        final ListTag palette = new ListTag();
+        for (String state : BLOCK_STATES) {
+            final CompoundTag entry = new CompoundTag();
+            entry.putString("Name", state);
+            palette.add(entry);
+        }
+
+        final ListTag blocks = new ListTag();
+        for (int x = 0; x < size; ++x) {
+            for (int y = 0; y < size; ++y) {
+                for (int z = 0; z < size; ++z) {
+                    final CompoundTag block = new CompoundTag();
+                    final ListTag pos = new ListTag();
+                    pos.add(IntTag.of(x));
+                    pos.add(IntTag.of(y));
+                    pos.add(IntTag.of(z));
+                    block.put("pos", pos);
+                    block.putInt("state", rand.nextInt(BLOCK_STATES.length));
+                    blocks.add(block);
+                }
+            }
+        }
+
+        final ListTag dimensions = new ListTag();
+        for (int i = 0; i < 3; ++i) {
+            dimensions.add(IntTag.of(size));
+        }
+
+        final CompoundTag structure = new CompoundTag();
+        structure.put("size", dimensions);
+        structure.put("palette", palette);
+        structure.put("blocks", blocks);
+        structure.put("entities", new ListTag());
+        structure.putInt("DataVersion", 2230);
+        return structure;
+    }
+
+    private static ListTag doubles(double... values) {
+        final ListTag ret = new ListTag();
+        for (double value : values) {
+            ret.add(DoubleTag.of(value));
+        }
+        return ret;
+    }
+
+    private static long[] longs(Random rand, int count) {
+        final long[] ret = new long[count];
+        for (int i = 0; i < count; ++i) {
+            ret[i] = rand.nextLong();
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate;
+
+import com.mojang.datafixers.Dynamic;
+import net.minecraft.datafixer.NbtOps;
+import net.minecraft.nbt.Tag;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Objects;
+
+/**
+ * Compare {@link ConfigurateOps#convert(Dynamic, com.mojang.datafixers.types.DynamicOps)} between nodes and NBT
+ * to DataFixerUpper's generic {@link Dynamic#convert(com.mojang.datafixers.types.DynamicOps)}.
+ *
+ * Both conversions are checked to produce the same result during setup.
+ */
+@State(Scope.Benchmark)
+public class ConvertBenchmark {
+    @Param({"player", "chunk"})
+    public String data;
+
+    private Dynamic<Tag> tag;
+    private Dynamic<ConfigurationNode> node;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.bootstrap();
+        tag = new Dynamic<>(NbtOps.INSTANCE, data.equals("chunk") ? BenchmarkSupport.chunkData() : BenchmarkSupport.legacyPlayerData());
+        node = tag.convert(ConfigurateOps.getInstance());
+
+        final ConfigurationNode fastNode = tagToNode();
+        final ConfigurationNode genericNode = tagToNodeGeneric();
+        if (!Objects.equals(fastNode.getValue(), genericNode.getValue())) {
+            throw new IllegalStateException("Converting " + data + " data to a node produced a different result than Dynamic.convert: "
+                    + fastNode.getValue() + " != " + genericNode.getValue());
+        }
+
+        final Tag fastTag = nodeToTag();
+        final Tag genericTag = nodeToTagGeneric();
+        if (!fastTag.equals(genericTag)) {
+            throw new IllegalStateException("Converting " + data + " data to a tag produced a different result than Dynamic.convert: "
+                    + fastTag + " != " + genericTag);
+        }
+    }
+
+    @Benchmark
+    public ConfigurationNode tagToNode() {
+        return ConfigurateOps.convert(tag, ConfigurateOps.getInstance()).getValue();
+    }
+
+    @Benchmark
+    public ConfigurationNode tagToNodeGeneric() {
+        return tag.convert(ConfigurateOps.getInstance()).getValue();
+    }
+
+    @Benchmark
+    public Tag nodeToTag() {
+        return ConfigurateOps.convert(node, NbtOps.INSTANCE).getValue();
+    }
+
+    @Benchmark
+    public Tag nodeToTagGeneric() {
+        return node.convert(NbtOps.INSTANCE).getValue();
+    }
+}
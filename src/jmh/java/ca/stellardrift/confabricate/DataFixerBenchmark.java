@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate;
+
+import com.google.gson.JsonElement;
+import com.mojang.datafixers.DataFixer;
+import com.mojang.datafixers.Dynamic;
+import com.mojang.datafixers.types.JsonOps;
+import net.minecraft.SharedConstants;
+import net.minecraft.datafixer.Schemas;
+import net.minecraft.datafixer.TypeReferences;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Compare upgrading legacy player data with {@link ConfigurateOps} to DFU's own {@link JsonOps}.
+ */
+@State(Scope.Benchmark)
+public class DataFixerBenchmark {
+    private DataFixer fixer;
+    private int currentVersion;
+    private ConfigurationNode source;
+    private JsonElement jsonSource;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkSupport.bootstrap();
+        fixer = Schemas.getFixer();
+        currentVersion = SharedConstants.getGameVersion().getWorldVersion();
+        source = ConfigurateOps.getInstance().empty();
+        NbtNodeAdapter.tagToNode(BenchmarkSupport.legacyPlayerData(), source);
+        jsonSource = ConfigurateOps.wrap(source).convert(JsonOps.INSTANCE).getValue();
+    }
+
+    @Benchmark
+    public ConfigurationNode updateConfigurate() {
+        return fixer.update(TypeReferences.PLAYER, new Dynamic<>(ConfigurateOps.getInstance(), source), BenchmarkSupport.LEGACY_DATA_VERSION, currentVersion).getValue();
+    }
+
+    @Benchmark
+    public JsonElement updateJson() {
+        return fixer.update(TypeReferences.PLAYER, new Dynamic<>(JsonOps.INSTANCE, jsonSource), BenchmarkSupport.LEGACY_DATA_VERSION, currentVersion).getValue();
+    }
+}
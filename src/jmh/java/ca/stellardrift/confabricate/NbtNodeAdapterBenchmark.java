@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate;
+
+import com.google.common.collect.ImmutableSet;
+import net.minecraft.nbt.Tag;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.ConfigurationOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conversions between NBT and configuration nodes, both for nodes that accept
+ * primitive arrays and for nodes that store them as lists.
+ *
+ * Parallel conversion uses the default threshold, so only the structure data, with a list of
+ * 32768 blocks, is large enough to be split. For the other data it measures the overhead of checking.
+ */
+@State(Scope.Benchmark)
+public class NbtNodeAdapterBenchmark {
+    private static final int STRUCTURE_SIZE = 32;
+
+    @Param({"player", "chunk", "structure"})
+    public String data;
+
+    @Param({"true", "false"})
+    public boolean nativeArrays;
+
+    private ConfigurationOptions options;
+    private Tag tag;
+    private ConfigurationNode node;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkSupport.bootstrap();
+        if (nativeArrays) {
+            options = NbtNodeAdapter.createEmptyNode().getOptions();
+        } else {
+            options = ConfigurationOptions.defaults()
+                    .withNativeTypes(ImmutableSet.of(Map.class, List.class, Byte.class,
+                            Short.class, Integer.class, Long.class, Float.class, Double.class, String.class));
+        }
+        switch (data) {
+            case "chunk":
+                tag = BenchmarkSupport.chunkData();
+                break;
+            case "structure":
+                tag = BenchmarkSupport.structureData(STRUCTURE_SIZE);
+                break;
+            default:
+                tag = BenchmarkSupport.legacyPlayerData();
+        }
+        node = ConfigurationNode.root(options);
+        NbtNodeAdapter.tagToNode(tag, node);
+    }
+
+    @Benchmark
+    public ConfigurationNode tagToNode() throws IOException {
+        final ConfigurationNode ret = ConfigurationNode.root(options);
+        NbtNodeAdapter.tagToNode(tag, ret);
+        return ret;
+    }
+
+    @Benchmark
+    public Tag nodeToTag() throws IOException {
+        return NbtNodeAdapter.nodeToTag(node);
+    }
+
+    @Benchmark
+    public Tag nodeToTagParallel() throws IOException {
+        return NbtNodeAdapter.nodeToTagParallel(node);
+    }
+}
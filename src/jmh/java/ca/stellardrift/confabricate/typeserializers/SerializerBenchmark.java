@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate.typeserializers;
+
+import ca.stellardrift.confabricate.BenchmarkSupport;
+import com.google.common.reflect.TypeToken;
+import net.minecraft.block.Block;
+import net.minecraft.tag.BlockTags;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.Registry;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.objectmapping.ObjectMappingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deserialize lists of block identifiers, where each identifier appears many times.
+ */
+@State(Scope.Benchmark)
+public class SerializerBenchmark {
+    private static final TypeToken<Block> BLOCK = TypeToken.of(Block.class);
+    private static final TypeToken<TaggableCollection<Block>> BLOCK_COLLECTION = new TypeToken<TaggableCollection<Block>>() {};
+
+    @Param({"16", "4096"})
+    public int size;
+
+    private ConfigurationNode identifiers;
+    private RegistrySerializer<Block> registrySerializer;
+    private TaggableCollectionSerializer<Block> collectionSerializer;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.bootstrap();
+        final List<Identifier> ids = new ArrayList<>(Registry.BLOCK.getIds());
+        identifiers = ConfigurationNode.root();
+        for (int i = 0; i < size; ++i) {
+            identifiers.appendListNode().setValue(ids.get(i % ids.size()).toString());
+        }
+        registrySerializer = new RegistrySerializer<>(Registry.BLOCK);
+        collectionSerializer = new TaggableCollectionSerializer<>(Registry.BLOCK, BlockTags.getContainer());
+    }
+
+    @Benchmark
+    public void identifiers(Blackhole bh) throws ObjectMappingException {
+        for (ConfigurationNode child : identifiers.getChildrenList()) {
+            bh.consume(IdentifierSerializer.INSTANCE.deserialize(IdentifierSerializer.TOKEN, child));
+        }
+    }
+
+    @Benchmark
+    public void registryEntries(Blackhole bh) throws ObjectMappingException {
+        for (ConfigurationNode child : identifiers.getChildrenList()) {
+            bh.consume(registrySerializer.deserialize(BLOCK, child));
+        }
+    }
+
+    @Benchmark
+    public TaggableCollection<Block> taggableCollection() throws ObjectMappingException {
+        return collectionSerializer.deserialize(BLOCK_COLLECTION, identifiers);
+    }
+}
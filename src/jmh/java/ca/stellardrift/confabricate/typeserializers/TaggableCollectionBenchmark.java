@@ -0,0 +1,91 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate.typeserializers;
+
+import ca.stellardrift.confabricate.BenchmarkSupport;
+import net.minecraft.block.Block;
+import net.minecraft.tag.Tag;
+import net.minecraft.tag.TagContainer;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.Registry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Iterate and stream over a collection made of specific blocks and several overlapping tags.
+ */
+@State(Scope.Benchmark)
+public class TaggableCollectionBenchmark {
+    private static final int TAG_COUNT = 4;
+
+    @Param({"16", "512"})
+    public int size;
+
+    private TaggableCollection<Block> collection;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.bootstrap();
+        final Set<Block> specific = new HashSet<>();
+        final Map<Identifier, Tag<Block>> tags = new HashMap<>();
+        final int blockCount = Registry.BLOCK.getIds().size();
+        int index = 0;
+        for (int i = 0; i < TAG_COUNT; ++i) {
+            final Tag.Builder<Block> builder = Tag.Builder.create();
+            // Tags overlap by half of their elements with the next tag
+            for (int j = 0; j < size; ++j) {
+                builder.add(Registry.BLOCK.get((index + j) % blockCount));
+            }
+            final Identifier id = new Identifier("confabricate", "bench_" + i);
+            tags.put(id, builder.build(id));
+            index += size / 2;
+        }
+        for (int i = 0; i < size; i += 2) {
+            specific.add(Registry.BLOCK.get(i));
+        }
+        // Tags are resolved by id, so they must be in the container
+        final TagContainer<Block> container = new TagContainer<>(Registry.BLOCK::getOrEmpty, "", false, "block");
+        container.setEntries(tags);
+        collection = TaggableCollection.of(Registry.BLOCK, () -> container, specific, tags.keySet());
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Block block : collection) {
+            bh.consume(block);
+        }
+    }
+
+    @Benchmark
+    public long stream() {
+        return collection.stream().mapToInt(Registry.BLOCK::getRawId).asLongStream().sum();
+    }
+
+    @Benchmark
+    public long parallelStream() {
+        return collection.parallelStream().mapToInt(Registry.BLOCK::getRawId).asLongStream().sum();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A view over a {@link CompoundTag} that converts its top-level entries to configuration nodes
+ * only as they are accessed.
+ *
+ * Reading a few values out of a large tag, such as entity or block entity data, only pays for
+ * converting the entries that were actually requested. Changes made to the nodes are not visible
+ * in the tag until {@link #writeBack()} is called.
+ *
+ * Views are not thread-safe.
+ */
+public final class CompoundTagView {
+    private final CompoundTag tag;
+    private final ConfigurationNode node;
+    private final Set<String> converted = new HashSet<>();
+
+    CompoundTagView(CompoundTag tag, ConfigurationNode node) {
+        this.tag = tag;
+        this.node = node;
+    }
+
+    /**
+     * Get the tag this view wraps.
+     *
+     * @return The backing tag
+     */
+    public CompoundTag getTag() {
+        return this.tag;
+    }
+
+    /**
+     * Get a node at the provided path, converting the top-level tag entry containing it if necessary.
+     *
+     * @param path The path to fetch. The first element must be the {@link String} key of an entry in the tag
+     * @return The node at that path, virtual if no such entry exists
+     * @throws IOException if the tag entry could not be converted
+     */
+    public ConfigurationNode getNode(@NonNull Object... path) throws IOException {
+        requireNonNull(path, "path");
+        if (path.length == 0) {
+            throw new IllegalArgumentException("A view can only provide nodes for entries within the tag");
+        }
+        convert(path[0].toString());
+        return this.node.getNode(path);
+    }
+
+    /**
+     * Convert the entries with the provided keys, returning a node containing only those entries.
+     *
+     * This is useful for object mapping, where the set of keys read is known ahead of time.
+     *
+     * @param keys The keys of entries to convert
+     * @return The root node of this view
+     * @throws IOException if any tag entry could not be converted
+     */
+    public ConfigurationNode select(@NonNull String... keys) throws IOException {
+        for (String key : keys) {
+            convert(key);
+        }
+        return this.node;
+    }
+
+    private void convert(String key) throws IOException {
+        if (this.converted.add(key)) {
+            final Tag child = this.tag.get(key);
+            if (child != null) {
+                NbtNodeAdapter.tagToNode(child, this.node.getNode(key));
+            }
+        }
+    }
+
+    /**
+     * Write every entry that has been accessed through this view back to the tag.
+     *
+     * Entries whose nodes have been removed are removed from the tag. Empty compounds and lists
+     * cannot be represented by a node, so they are left as-is. Entries that were never accessed are left untouched.
+     * A view's nodes always accept array types, so array tags and list tags keep their types when written back.
+     *
+     * @throws IOException if any node could not be represented as NBT
+     */
+    public void writeBack() throws IOException {
+        for (String key : this.converted) {
+            final ConfigurationNode child = this.node.getNode(key);
+            if (child.isVirtual()) {
+                if (!isEmptyContainer(this.tag.get(key))) {
+                    this.tag.remove(key);
+                }
+            } else {
+                this.tag.put(key, NbtNodeAdapter.nodeToTag(child));
+            }
+        }
+    }
+
+    private static boolean isEmptyContainer(Tag tag) {
+        if (tag instanceof CompoundTag) {
+            return ((CompoundTag) tag).getSize() == 0;
+        } else if (tag instanceof ListTag) {
+            return ((ListTag) tag).isEmpty();
+        }
+        return false;
+    }
+}
@@ -16,6 +16,7 @@
 
 package ca.stellardrift.confabricate;
 
+import ca.stellardrift.confabricate.typeserializers.DeferredSerializer;
 import ca.stellardrift.confabricate.typeserializers.IdentifierSerializer;
 import ca.stellardrift.confabricate.typeserializers.RegistrySerializer;
 import ca.stellardrift.confabricate.typeserializers.TaggableCollection;
@@ -94,6 +95,7 @@ import org.apache.logging.log4j.Logger;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Configurate integration holder, providing access to configuration loaders pre-configured to work with Minecraft types.
@@ -141,15 +143,16 @@ public class Confabricate implements ModInitializer {
         mcTypeSerializers = TypeSerializerCollection.defaults()
                 .newChild()
                 .register(IdentifierSerializer.TOKEN, IdentifierSerializer.INSTANCE)
-                .register(TextSerializer.TOKEN, TextSerializer.INSTANCE);
+                .register(TextSerializer.TOKEN, TextSerializer.INSTANCE)
+                .register(DeferredSerializer.TOKEN, DeferredSerializer.INSTANCE);
 
         registerRegistry(SoundEvent.class, Registry.SOUND_EVENT);
-        registerTaggedRegistry(TypeToken.of(Fluid.class), Registry.FLUID, FluidTags.getContainer());
+        registerTaggedRegistry(TypeToken.of(Fluid.class), Registry.FLUID, FluidTags::getContainer);
         registerRegistry(StatusEffect.class, Registry.STATUS_EFFECT);
-        registerTaggedRegistry(TypeToken.of(Block.class), Registry.BLOCK, BlockTags.getContainer());
+        registerTaggedRegistry(TypeToken.of(Block.class), Registry.BLOCK, BlockTags::getContainer);
         registerRegistry(Enchantment.class, Registry.ENCHANTMENT);
-        registerTaggedRegistry(new TypeToken<EntityType<?>>() {}, Registry.ENTITY_TYPE, EntityTypeTags.getContainer());
-        registerTaggedRegistry(TypeToken.of(Item.class), Registry.ITEM, ItemTags.getContainer());
+        registerTaggedRegistry(new TypeToken<EntityType<?>>() {}, Registry.ENTITY_TYPE, EntityTypeTags::getContainer);
+        registerTaggedRegistry(TypeToken.of(Item.class), Registry.ITEM, ItemTags::getContainer);
         registerRegistry(Potion.class, Registry.POTION);
         registerRegistry(new TypeToken<Carver<?>>() {}, Registry.CARVER);
         registerRegistry(new TypeToken<SurfaceBuilder<?>>() {}, Registry.SURFACE_BUILDER);
@@ -196,7 +199,7 @@ public class Confabricate implements ModInitializer {
        // CommandRegistry.INSTANCE.register(false, TestCommands::register);
     }
 
-    private <T> void registerTaggedRegistry(TypeToken<T> token, Registry<T> registry, TagContainer<T> tagRegistry) {
+    private <T> void registerTaggedRegistry(TypeToken<T> token, Registry<T> registry, Supplier<TagContainer<T>> tagRegistry) {
         final TypeParameter<T> tParam = new TypeParameter<T>() {};
         final TypeToken<TaggableCollection<T>> fullToken = new TypeToken<TaggableCollection<T>>() {
         }.where(tParam, token);
@@ -311,6 +314,35 @@ public class Confabricate implements ModInitializer {
         }, getConfigurationFile(mod, ownDirectory));
     }
 
+    /**
+     * Create a loader for a file in Minecraft's binary NBT format.
+     *
+     * The returned {@link ConfigurationLoader} will be pre-configured to use the type serializers
+     * from {@link #getMinecraftTypeSerializers()}, and will write GZIP-compressed files.
+     *
+     * @param path The file to load from and save to
+     * @return The newly created configuration loader
+     * @see NbtConfigurationLoader
+     */
+    public static ConfigurationLoader<ConfigurationNode> createNbtLoaderFor(Path path) {
+        return NbtConfigurationLoader.builder()
+                .setPath(path)
+                .build();
+    }
+
+    /**
+     * Create a configuration reference to a file in Minecraft's binary NBT format.
+     * The returned reference will automatically reload.
+     *
+     * @param path The file to load from and save to
+     * @return The newly created and loaded configuration reference
+     * @throws IOException if a listener could not be established or the file failed to load
+     * @see #createNbtLoaderFor(Path)
+     */
+    public static ConfigurationReference<ConfigurationNode> createNbtConfigurationFor(Path path) throws IOException {
+        return getFileWatcher().listenToConfiguration(Confabricate::createNbtLoaderFor, path);
+    }
+
     /**
      * Get the path to a configuration file in HOCON format for the provided mod.
      *
@@ -16,17 +16,31 @@
 
 package ca.stellardrift.confabricate;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
 import com.mojang.datafixers.DSL;
 import com.mojang.datafixers.Dynamic;
 import com.mojang.datafixers.types.DynamicOps;
 import com.mojang.datafixers.types.Type;
+import net.minecraft.datafixer.NbtOps;
+import net.minecraft.nbt.Tag;
 import ninja.leaping.configurate.ConfigurationNode;
 import ninja.leaping.configurate.ConfigurationOptions;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
@@ -38,11 +52,37 @@ import java.util.stream.Stream;
  * Otherwise, the provided factory will be used. The default factory creates a {@link CommentedConfigurationNode} with
  * Confabricate's {@link Confabricate#getMinecraftTypeSerializers() own TypeSerializer collection}, but a custom factory may be provided.
  *
+ * Operations that modify a node always work on a deep copy of their input, since DataFixerUpper may read
+ * the same input again after an earlier attempt to use it. Map values are exposed by
+ * {@link #getMapValues(ConfigurationNode)} as copies, so changes to them can not reach the input.
+ *
  */
 public final class ConfigurateOps implements DynamicOps<ConfigurationNode> {
-    private static final ConfigurateOps INSTANCE = new ConfigurateOps(() ->
+    static final Supplier<ConfigurationNode> DEFAULT_FACTORY = () ->
             CommentedConfigurationNode.root(ConfigurationOptions.defaults()
-                    .withSerializers(Confabricate.getMinecraftTypeSerializers())));
+                    .withSerializers(Confabricate.getMinecraftTypeSerializers()));
+    private static final ConfigurateOps INSTANCE = new ConfigurateOps(DEFAULT_FACTORY);
+
+    private static final Type<?> MAP_TYPE = DSL.compoundList(DSL.remainderType(), DSL.remainderType());
+    private static final Type<?> LIST_TYPE = DSL.list(DSL.remainderType());
+    private static final Map<Class<?>, Type<?>> SCALAR_TYPES = ImmutableMap.<Class<?>, Type<?>>builder()
+            .put(String.class, DSL.string())
+            .put(Boolean.class, DSL.bool())
+            .put(Short.class, DSL.shortType())
+            .put(Integer.class, DSL.intType())
+            .put(Long.class, DSL.longType())
+            .put(Float.class, DSL.floatType())
+            .put(Double.class, DSL.doubleType())
+            .put(Byte.class, DSL.byteType())
+            .build();
+
+    // Ops instances hold a strong reference to their options through the node factory,
+    // so values must be weak as well for entries to be collected once the options are no longer in use.
+    private static final LoadingCache<ConfigurationOptions, DynamicOps<ConfigurationNode>> OPTIONS_OPS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .weakValues()
+            .maximumSize(64)
+            .build(CacheLoader.from(options -> builder().setFactoryFromOptions(options).build()));
 
     private final Supplier<? extends ConfigurationNode> factory;
 
@@ -62,29 +102,106 @@ public final class ConfigurateOps implements DynamicOps<ConfigurationNode> {
      * @return A new ops instance
      */
     public static DynamicOps<ConfigurationNode> getWithNodeFactory(Supplier<? extends ConfigurationNode> factory) {
-        return new ConfigurateOps(factory);
+        return builder().setFactory(factory).build();
+    }
+
+    /**
+     * Create a new builder for an ops instance.
+     *
+     * @return A new builder, initialized with the default factory
+     */
+    public static ConfigurateOpsBuilder builder() {
+        return new ConfigurateOpsBuilder();
     }
 
     /**
      * Wrap a ConfigurationNode in a {@link Dynamic} instance. The returned Dynamic will use the same type
      * serializer collection as the original node for its operations.
      *
+     * Ops instances for nodes with custom options are cached, so repeatedly wrapping nodes
+     * that share the same options will reuse one ops instance.
+     *
      * @param node The node to wrap
      * @return a wrapped node
      */
     public static Dynamic<ConfigurationNode> wrap(ConfigurationNode node) {
-        if (node.getOptions().getSerializers().equals(Confabricate.getMinecraftTypeSerializers())) {
+        final ConfigurationOptions opts = node.getOptions();
+        if (opts.getSerializers() == Confabricate.getMinecraftTypeSerializers()) {
             return new Dynamic<>(getInstance(), node);
         } else {
-            final ConfigurationOptions opts = node.getOptions();
-            return new Dynamic<>(getWithNodeFactory(() -> CommentedConfigurationNode.root(opts)), node);
+            return new Dynamic<>(OPTIONS_OPS.getUnchecked(opts), node);
         }
     }
 
-    protected ConfigurateOps(Supplier<? extends ConfigurationNode> factory) {
+    /**
+     * Convert a {@link Dynamic} to another representation.
+     *
+     * Conversions between configuration nodes and NBT tags are performed in a single pass by
+     * {@link NbtNodeAdapter}, rather than through DataFixerUpper's generic conversion. The result is
+     * the same as {@link Dynamic#convert(DynamicOps)}: array tags become lists of numbers in nodes,
+     * and lists of bytes, ints, or longs become array tags, as {@link NbtOps} would create them.
+     * If a node can not be represented by the fast path (for example, because it contains booleans),
+     * or for any other pair of representations, this falls back to {@link Dynamic#convert(DynamicOps)}.
+     * Input nested more than {@link NbtNodeAdapter#DEFAULT_MAX_DEPTH} levels deep is rejected rather than
+     * falling back, since the generic conversion is recursive and could overflow the stack.
+     *
+     * @param input The dynamic to convert
+     * @param outOps The ops for the desired representation
+     * @param <V> The type of the desired representation
+     * @return A converted dynamic
+     * @throws IllegalArgumentException if the input is nested too deeply
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> Dynamic<V> convert(Dynamic<?> input, DynamicOps<V> outOps) {
+        final DynamicOps<?> inOps = input.getOps();
+        if (inOps == outOps) {
+            return (Dynamic<V>) input;
+        }
+
+        try {
+            if (inOps instanceof ConfigurateOps && outOps == NbtOps.INSTANCE) {
+                final Tag result = NbtNodeAdapter.nodeToTag((ConfigurationNode) input.getValue(), NbtNodeAdapter.DEFAULT_MAX_DEPTH, true);
+                return new Dynamic<>(outOps, (V) result);
+            } else if (inOps == NbtOps.INSTANCE && outOps instanceof ConfigurateOps) {
+                final ConfigurationNode result = (ConfigurationNode) outOps.empty();
+                NbtNodeAdapter.tagToNode((Tag) input.getValue(), result, NbtNodeAdapter.DEFAULT_MAX_DEPTH, true);
+                return new Dynamic<>(outOps, (V) result);
+            }
+        } catch (UnsupportedTypeException ex) {
+            // not representable by the adapter, fall through to generic conversion
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex.getMessage(), ex);
+        }
+        return input.convert(outOps);
+    }
+
+    ConfigurateOps(Supplier<? extends ConfigurationNode> factory) {
         this.factory = factory;
     }
 
+    /**
+     * Get the node that should be exposed to a reader in place of {@code child}.
+     *
+     * @param child The child node of an input
+     * @return A copy of the child
+     */
+    private static ConfigurationNode guardOutputRead(ConfigurationNode child) {
+        return child.copy();
+    }
+
+    /**
+     * Get the node that a write operation on {@code input} should modify.
+     *
+     * DataFixerUpper treats values as immutable, and will retry reading an input after a failed
+     * attempt (for example, when trying each alternative of a sum type), so inputs are never modified in place.
+     *
+     * @param input The node provided to the operation
+     * @return A copy of the input to modify and return
+     */
+    private static ConfigurationNode guardInputWrite(ConfigurationNode input) {
+        return input.copy();
+    }
+
     @Override
     public ConfigurationNode empty() {
         return factory.get();
@@ -97,33 +214,21 @@ public final class ConfigurateOps implements DynamicOps<ConfigurationNode> {
         }
 
         if (input.isMap()) {
-            return DSL.compoundList(DSL.remainderType(), DSL.remainderType());
-
+            return MAP_TYPE;
         } else if (input.isList()) {
-            return DSL.list(DSL.remainderType());
+            return LIST_TYPE;
         } else {
             Object value = input.getValue();
             if (value == null) {
                 return DSL.nilType();
-            } else if (value instanceof String) {
-                return DSL.string();
-            } else if (value instanceof Boolean) {
-                return DSL.bool();
-            } else if (value instanceof Short) {
-                return DSL.shortType();
-            } else if (value instanceof Integer) {
-                return DSL.intType();
-            } else if (value instanceof Long) {
-                return DSL.longType();
-            } else if (value instanceof Float) {
-                return DSL.floatType();
-            } else if (value instanceof Double) {
-                return DSL.doubleType();
-            } else if (value instanceof Byte) {
-                return DSL.byteType();
-            } else {
+            }
+
+            // All supported scalar types are final, so an exact class lookup is equivalent to an instanceof check
+            final Type<?> type = SCALAR_TYPES.get(value.getClass());
+            if (type == null) {
                 throw new IllegalArgumentException("Scalar value '" + input + "' has an unknown type: " + value.getClass().getName());
             }
+            return type;
         }
     }
 
@@ -163,7 +268,7 @@ public final class ConfigurateOps implements DynamicOps<ConfigurationNode> {
     @Override
     public ConfigurationNode mergeInto(ConfigurationNode input, ConfigurationNode value) {
         if (input.isList()) {
-            ConfigurationNode ret = input.copy();
+            ConfigurationNode ret = guardInputWrite(input);
             ret.appendListNode().setValue(value);
             return ret;
         }
@@ -172,7 +277,9 @@ public final class ConfigurateOps implements DynamicOps<ConfigurationNode> {
 
     @Override
     public ConfigurationNode mergeInto(ConfigurationNode input, ConfigurationNode key, ConfigurationNode value) {
-        return input.copy().getNode(key.getValue()).setValue(value);
+        ConfigurationNode ret = guardInputWrite(input);
+        ret.getNode(key.getValue()).setValue(value);
+        return ret;
     }
 
     /**
@@ -184,58 +291,71 @@ public final class ConfigurateOps implements DynamicOps<ConfigurationNode> {
      */
     @Override
     public ConfigurationNode merge(ConfigurationNode first, ConfigurationNode second) {
-        return first.copy().mergeValuesFrom(second);
+        return guardInputWrite(first).mergeValuesFrom(second);
 
     }
 
+    /**
+     * Get a read-only view of the children of a map node.
+     *
+     * Key nodes are only created, and values only copied, as entries of the view are accessed.
+     *
+     * @param input The map node
+     * @return A view of the node's children, if it is a map
+     */
     @Override
     public Optional<Map<ConfigurationNode, ConfigurationNode>> getMapValues(ConfigurationNode input) {
         if(input.isMap()) {
-            ImmutableMap.Builder<ConfigurationNode, ConfigurationNode> builder = ImmutableMap.builder();
-            for (Map.Entry<Object, ? extends ConfigurationNode> entry : input.getChildrenMap().entrySet()) {
-                builder.put(empty().setValue(entry.getKey()), entry.getValue().copy());
-            }
-            return Optional.of(builder.build());
+            return Optional.of(new ChildrenMapView(input.getChildrenMap()));
         }
 
         return Optional.empty();
     }
 
+    /**
+     * Create a new map node. The node's children are populated in a single operation,
+     * rather than being attached to the new node one at a time.
+     *
+     * @param map The entries of the new node
+     * @return A newly created node
+     */
     @Override
     public ConfigurationNode createMap(Map<ConfigurationNode, ConfigurationNode> map) {
-        final ConfigurationNode ret = empty();
+        final Map<Object, ConfigurationNode> values = Maps.newLinkedHashMapWithExpectedSize(map.size());
 
         for(Map.Entry<ConfigurationNode, ConfigurationNode> entry : map.entrySet()) {
-            ret.getNode(entry.getKey().getValue()).setValue(entry.getValue());
+            values.put(entry.getKey().getValue(), entry.getValue());
         }
 
-        return ret;
+        return empty().setValue(values);
     }
 
     @Override
     public Optional<Stream<ConfigurationNode>> getStream(ConfigurationNode input) {
         if(input.isList()) {
-            Stream<ConfigurationNode> stream = input.getChildrenList().stream().map(it -> it);
-            return Optional.of(stream);
+            return Optional.of(Collections.<ConfigurationNode>unmodifiableList(input.getChildrenList()).stream());
         }
 
         return Optional.empty();
     }
 
+    /**
+     * Create a new list node. The node's children are populated in a single operation,
+     * rather than being appended to the new node one at a time.
+     *
+     * @param input The elements of the new node
+     * @return A newly created node
+     */
     @Override
     public ConfigurationNode createList(Stream<ConfigurationNode> input) {
-        ConfigurationNode ret = empty();
-        input.forEach(it -> {
-            ret.appendListNode().setValue(it);
-        });
-        return ret;
+        return empty().setValue(Arrays.asList(input.toArray(ConfigurationNode[]::new)));
     }
 
     @Override
     public ConfigurationNode remove(ConfigurationNode input, String key) {
         if(input.isMap()) {
-            ConfigurationNode ret = input.copy();
-            ret.getNode(key).setValue(null);
+            ConfigurationNode ret = guardInputWrite(input);
+            ret.removeChild(key);
             return ret;
         }
 
@@ -256,7 +376,7 @@ public final class ConfigurateOps implements DynamicOps<ConfigurationNode> {
 
     @Override
     public ConfigurationNode set(final ConfigurationNode input, final String key, final ConfigurationNode value) {
-        ConfigurationNode ret = input.copy();
+        ConfigurationNode ret = guardInputWrite(input);
         ret.getNode(key).setValue(value);
         return ret;
     }
@@ -267,7 +387,7 @@ public final class ConfigurateOps implements DynamicOps<ConfigurationNode> {
             return input;
         }
 
-        ConfigurationNode ret = input.copy();
+        ConfigurationNode ret = guardInputWrite(input);
 
         ConfigurationNode child = ret.getNode(key);
         child.setValue(function.apply(child));
@@ -281,7 +401,7 @@ public final class ConfigurateOps implements DynamicOps<ConfigurationNode> {
             return input;
         }
 
-        ConfigurationNode ret = input.copy();
+        ConfigurationNode ret = guardInputWrite(input);
 
         ConfigurationNode child = ret.getNode(key);
         child.setValue(function.apply(child));
@@ -292,4 +412,50 @@ public final class ConfigurateOps implements DynamicOps<ConfigurationNode> {
     public String toString() {
         return "Configurate";
     }
+
+    /**
+     * A lazy, read-only view over the children of a map node, as seen by DataFixerUpper.
+     */
+    private final class ChildrenMapView extends AbstractMap<ConfigurationNode, ConfigurationNode> {
+        private final Map<Object, ? extends ConfigurationNode> children;
+
+        ChildrenMapView(Map<Object, ? extends ConfigurationNode> children) {
+            this.children = children;
+        }
+
+        @Override
+        public int size() {
+            return children.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof ConfigurationNode && children.containsKey(((ConfigurationNode) key).getValue());
+        }
+
+        @Override
+        public ConfigurationNode get(Object key) {
+            if (!(key instanceof ConfigurationNode)) {
+                return null;
+            }
+            final ConfigurationNode child = children.get(((ConfigurationNode) key).getValue());
+            return child == null ? null : guardOutputRead(child);
+        }
+
+        @Override
+        public Set<Entry<ConfigurationNode, ConfigurationNode>> entrySet() {
+            return new AbstractSet<Entry<ConfigurationNode, ConfigurationNode>>() {
+                @Override
+                public Iterator<Entry<ConfigurationNode, ConfigurationNode>> iterator() {
+                    return Iterators.transform(children.entrySet().iterator(),
+                            ent -> new SimpleImmutableEntry<>(empty().setValue(ent.getKey()), guardOutputRead(ent.getValue())));
+                }
+
+                @Override
+                public int size() {
+                    return children.size();
+                }
+            };
+        }
+    }
 }
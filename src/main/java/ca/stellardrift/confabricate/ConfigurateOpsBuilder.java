@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate;
+
+import com.mojang.datafixers.types.DynamicOps;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.ConfigurationOptions;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.objectmapping.serialize.TypeSerializerCollection;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A builder for {@link ConfigurateOps} instances.
+ *
+ * @see ConfigurateOps#builder()
+ */
+public final class ConfigurateOpsBuilder {
+    private Supplier<? extends ConfigurationNode> factory = ConfigurateOps.DEFAULT_FACTORY;
+
+    ConfigurateOpsBuilder() {
+    }
+
+    /**
+     * Set the factory used to create new empty nodes.
+     *
+     * @param factory The node factory
+     * @return This builder
+     */
+    public ConfigurateOpsBuilder setFactory(@NonNull Supplier<? extends ConfigurationNode> factory) {
+        this.factory = requireNonNull(factory, "factory");
+        return this;
+    }
+
+    /**
+     * Create new nodes as {@link CommentedConfigurationNode CommentedConfigurationNodes} with the provided options.
+     *
+     * @param options The options to create nodes with
+     * @return This builder
+     */
+    public ConfigurateOpsBuilder setFactoryFromOptions(@NonNull ConfigurationOptions options) {
+        requireNonNull(options, "options");
+        return setFactory(() -> CommentedConfigurationNode.root(options));
+    }
+
+    /**
+     * Create new nodes with default options and the provided type serializers.
+     *
+     * @param serializers The type serializers to create nodes with
+     * @return This builder
+     */
+    public ConfigurateOpsBuilder setFactoryFromSerializers(@NonNull TypeSerializerCollection serializers) {
+        requireNonNull(serializers, "serializers");
+        return setFactoryFromOptions(ConfigurationOptions.defaults().withSerializers(serializers));
+    }
+
+    /**
+     * Create a new ops instance with the current settings of this builder.
+     *
+     * @return The new ops instance
+     */
+    public DynamicOps<ConfigurationNode> build() {
+        return new ConfigurateOps(factory);
+    }
+}
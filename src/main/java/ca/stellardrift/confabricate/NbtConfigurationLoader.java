@@ -0,0 +1,222 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.ConfigurationOptions;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A loader for files in Minecraft's binary NBT format, such as {@code .nbt} and {@code .dat} files.
+ *
+ * Files are read into memory in one pass and closed before being decoded, and may be either raw or GZIP-compressed --
+ * compression is detected automatically when loading. Files are written atomically, compressed
+ * or not depending on the loader's settings.
+ *
+ * Because NBT does not support every type a configuration node can hold, some nodes may fail to save.
+ * See {@link NbtNodeAdapter#nodeToTag(ConfigurationNode)} for details.
+ */
+public final class NbtConfigurationLoader implements ConfigurationLoader<ConfigurationNode> {
+    private static final int GZIP_MAGIC_FIRST = 0x1f;
+    private static final int GZIP_MAGIC_SECOND = 0x8b;
+
+    private final Path path;
+    private final boolean compressed;
+    private final ConfigurationOptions defaultOptions;
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private NbtConfigurationLoader(Builder builder) {
+        this.path = builder.path;
+        this.compressed = builder.compressed;
+        this.defaultOptions = builder.defaultOptions;
+    }
+
+    @Override
+    public @NonNull ConfigurationOptions getDefaultOptions() {
+        return this.defaultOptions;
+    }
+
+    @Override
+    public @NonNull ConfigurationNode load(@NonNull ConfigurationOptions options) throws IOException {
+        final ConfigurationNode node = createEmptyNode(options);
+        final byte[] data;
+        try {
+            data = readFully();
+        } catch (NoSuchFileException ex) {
+            return node; // empty node
+        }
+        if (data.length == 0) {
+            return node;
+        }
+
+        final boolean gzip = data.length >= 2
+                && (data[0] & 0xff) == GZIP_MAGIC_FIRST
+                && (data[1] & 0xff) == GZIP_MAGIC_SECOND;
+        final InputStream input = new ByteArrayInputStream(data);
+        if (gzip) {
+            NbtNodeAdapter.readNode(input, node, true);
+        } else {
+            // Already in memory, no need for extra buffering
+            NbtNodeAdapter.readNode(new DataInputStream(input), node);
+        }
+        return node;
+    }
+
+    /**
+     * Read the entire file into a heap buffer.
+     *
+     * The file is not memory-mapped, since a mapping keeps the file open until it is garbage collected,
+     * which on Windows prevents {@link #save(ConfigurationNode)} from replacing it.
+     *
+     * @return The contents of the file
+     * @throws IOException if the file could not be read
+     */
+    private byte[] readFully() throws IOException {
+        try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File " + this.path + " is too large to be read as NBT");
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break; // truncated while reading, decode what we have
+                }
+            }
+            return buffer.position() == buffer.capacity() ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+        }
+    }
+
+    @Override
+    public void save(@NonNull ConfigurationNode node) throws IOException {
+        final Path absolute = this.path.toAbsolutePath();
+        final Path parent = absolute.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        final Path temp = Files.createTempFile(parent, absolute.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                NbtNodeAdapter.writeNode(node, out, this.compressed);
+            }
+            try {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public @NonNull ConfigurationNode createEmptyNode(@NonNull ConfigurationOptions options) {
+        return NbtNodeAdapter.createEmptyNode(options);
+    }
+
+    /**
+     * A builder for {@link NbtConfigurationLoader NbtConfigurationLoaders}.
+     */
+    public static final class Builder {
+        private Path path;
+        private boolean compressed = true;
+        private ConfigurationOptions defaultOptions = ConfigurationOptions.defaults()
+                .withSerializers(Confabricate.getMinecraftTypeSerializers());
+
+        Builder() {
+        }
+
+        /**
+         * Set the file to load from and save to.
+         *
+         * @param path The file path
+         * @return this
+         */
+        public Builder setPath(@NonNull Path path) {
+            this.path = requireNonNull(path, "path");
+            return this;
+        }
+
+        /**
+         * Set whether saved files should be GZIP-compressed. This has no effect on loading,
+         * where compression is detected automatically.
+         *
+         * Defaults to true, matching Minecraft's own {@code .dat} files.
+         *
+         * @param compressed Whether to compress output
+         * @return this
+         */
+        public Builder setCompressed(boolean compressed) {
+            this.compressed = compressed;
+            return this;
+        }
+
+        /**
+         * Set the default options used when loading and creating nodes.
+         *
+         * By default, nodes will use the type serializers from {@link Confabricate#getMinecraftTypeSerializers()}.
+         *
+         * @param options The default options
+         * @return this
+         */
+        public Builder setDefaultOptions(@NonNull ConfigurationOptions options) {
+            this.defaultOptions = requireNonNull(options, "options");
+            return this;
+        }
+
+        /**
+         * Modify the default options used when loading and creating nodes.
+         *
+         * @param transformer A function that will be applied to the current default options
+         * @return this
+         */
+        public Builder setDefaultOptions(@NonNull UnaryOperator<ConfigurationOptions> transformer) {
+            this.defaultOptions = requireNonNull(transformer.apply(this.defaultOptions), "options");
+            return this;
+        }
+
+        public NbtConfigurationLoader build() {
+            if (this.path == null) {
+                throw new IllegalStateException("A path must be set");
+            }
+            return new NbtConfigurationLoader(this);
+        }
+    }
+}
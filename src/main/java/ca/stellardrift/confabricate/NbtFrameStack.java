@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The open compounds and lists while streaming binary NBT, stored in parallel arrays
+ * to avoid allocating a frame for every container.
+ *
+ * Each frame holds an object (the node being read into, or the iterator over children being written),
+ * the type of a list's elements (or {@link #COMPOUND} for compounds, which may contain any type),
+ * and a count of elements remaining, where known.
+ */
+final class NbtFrameStack {
+    /**
+     * The type of a compound frame. This is not a valid tag type, so it can not be confused with a list of compounds.
+     */
+    static final byte COMPOUND = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int maxDepth;
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] remaining = new int[INITIAL_CAPACITY];
+    private int size;
+
+    NbtFrameStack(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Check that a tag read or written now would not be nested too deeply.
+     *
+     * The root tag is at depth 0, and each open container adds a level.
+     *
+     * @throws IOException if the current depth exceeds the maximum depth
+     */
+    void checkDepth() throws IOException {
+        if (this.size > this.maxDepth) {
+            throw new IOException("Tried to convert NBT tag with too high complexity, depth > " + this.maxDepth);
+        }
+    }
+
+    void push(Object value, byte type, int remaining) {
+        if (this.size == this.values.length) {
+            final int newCapacity = this.size << 1;
+            this.values = Arrays.copyOf(this.values, newCapacity);
+            this.types = Arrays.copyOf(this.types, newCapacity);
+            this.remaining = Arrays.copyOf(this.remaining, newCapacity);
+        }
+        this.values[this.size] = value;
+        this.types[this.size] = type;
+        this.remaining[this.size] = remaining;
+        this.size++;
+    }
+
+    void pop() {
+        this.values[--this.size] = null;
+    }
+
+    Object value() {
+        return this.values[this.size - 1];
+    }
+
+    byte type() {
+        return this.types[this.size - 1];
+    }
+
+    /**
+     * Take one element from the top frame's count.
+     *
+     * @return Whether there was an element remaining
+     */
+    boolean takeRemaining() {
+        final int idx = this.size - 1;
+        if (this.remaining[idx] == 0) {
+            return false;
+        }
+        this.remaining[idx]--;
+        return true;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+}
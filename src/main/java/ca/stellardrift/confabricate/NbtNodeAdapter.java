@@ -16,12 +16,15 @@
 
 package ca.stellardrift.confabricate;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
 import net.minecraft.nbt.ByteArrayTag;
 import net.minecraft.nbt.ByteTag;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.DoubleTag;
-import net.minecraft.nbt.EndTag;
 import net.minecraft.nbt.FloatTag;
 import net.minecraft.nbt.IntArrayTag;
 import net.minecraft.nbt.IntTag;
@@ -34,15 +37,77 @@ import net.minecraft.nbt.Tag;
 import ninja.leaping.configurate.ConfigurationNode;
 import ninja.leaping.configurate.ConfigurationOptions;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * A configuration adapter that will convert Minecraft NBT data into a Configurate {@link ConfigurationNode}
  */
 public class NbtNodeAdapter {
+    // Tag type ids, as returned by Tag#getType()
+    static final byte TAG_END = 0;
+    static final byte TAG_BYTE = 1;
+    static final byte TAG_SHORT = 2;
+    static final byte TAG_INT = 3;
+    static final byte TAG_LONG = 4;
+    static final byte TAG_FLOAT = 5;
+    static final byte TAG_DOUBLE = 6;
+    static final byte TAG_BYTE_ARRAY = 7;
+    static final byte TAG_STRING = 8;
+    static final byte TAG_LIST = 9;
+    static final byte TAG_COMPOUND = 10;
+    static final byte TAG_INT_ARRAY = 11;
+    static final byte TAG_LONG_ARRAY = 12;
+
+    /**
+     * The default maximum nesting depth of tags, matching the limit applied by Minecraft when reading NBT.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 512;
+
+    /**
+     * The default limit on the approximate size in memory of tags read from binary NBT.
+     *
+     * This is far larger than any vanilla file, but small enough that corrupt input can not exhaust memory.
+     */
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * The default number of direct children a map or list node must have before its conversion to a tag is split across threads.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1024;
+
+    // All supported scalar types are final, so an exact class lookup is equivalent to an instanceof check
+    private static final Map<Class<?>, Function<Object, Tag>> SCALAR_TO_TAG = ImmutableMap.<Class<?>, Function<Object, Tag>>builder()
+            .put(byte[].class, obj -> new ByteArrayTag((byte[]) obj))
+            .put(int[].class, obj -> new IntArrayTag((int[]) obj))
+            .put(long[].class, obj -> new LongArrayTag((long[]) obj))
+            .put(Byte.class, obj -> ByteTag.of((Byte) obj))
+            .put(Short.class, obj -> ShortTag.of((Short) obj))
+            .put(Integer.class, obj -> IntTag.of((Integer) obj))
+            .put(Long.class, obj -> LongTag.of((Long) obj))
+            .put(Float.class, obj -> FloatTag.of((Float) obj))
+            .put(Double.class, obj -> DoubleTag.of((Double) obj))
+            .put(String.class, obj -> StringTag.of((String) obj))
+            .build();
 
     /**
      * Given a tag, convert it to a node.
@@ -54,61 +119,299 @@ public class NbtNodeAdapter {
      * @throws IOException If invalid tags are provided
      */
     public static void tagToNode(Tag tag, ConfigurationNode node) throws IOException {
-        if (tag instanceof CompoundTag) {
-            CompoundTag compoundTag = (CompoundTag) tag;
-            for (String key : compoundTag.getKeys()) {
-                tagToNode(compoundTag.get(key), node.getNode(key));
-            }
-        } else if (tag instanceof ListTag) {
-            for (Tag value : (ListTag) tag) {
-                tagToNode(value, node.appendListNode());
-            }
-        } else if (tag instanceof StringTag) {
-            node.setValue(tag.asString());
-        } else if (tag instanceof ByteTag) {
-            node.setValue(((ByteTag) tag).getByte());
-        } else if (tag instanceof ShortTag) {
-            node.setValue(((ShortTag) tag).getShort());
-        } else if (tag instanceof IntTag) {
-            node.setValue(((IntTag) tag).getInt());
-        } else if (tag instanceof LongTag) {
-            node.setValue(((LongTag) tag).getLong());
-        } else if (tag instanceof FloatTag) {
-            node.setValue(((FloatTag) tag).getFloat());
-        } else if (tag instanceof DoubleTag) {
-            node.setValue(((DoubleTag) tag).getDouble());
-        } else if (tag instanceof ByteArrayTag) {
-            if (node.getOptions().acceptsType(byte[].class)) {
-                node.setValue(((ByteArrayTag) tag).getByteArray());
-            } else {
-                node.setValue(null);
-                for (byte b : ((ByteArrayTag) tag).getByteArray()) {
-                    node.appendListNode().setValue(b);
+        tagToNode(tag, node, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Given a tag, convert it to a node, rejecting tags nested more than {@code maxDepth} levels deep.
+     *
+     * Conversion uses an explicit stack rather than recursion, so arbitrarily deep input from untrusted
+     * sources will fail with an exception rather than overflowing the thread's stack.
+     *
+     * @param tag The tag to convert
+     * @param node The node to populate
+     * @param maxDepth The maximum nesting depth of tags, where the root tag is at depth 0
+     * @throws IOException If invalid tags are provided, or the tag is nested too deeply
+     */
+    public static void tagToNode(Tag tag, ConfigurationNode node, int maxDepth) throws IOException {
+        tagToNode(tag, node, maxDepth, false);
+    }
+
+    /**
+     * Given a tag, convert it to a node, optionally laying out the node as DataFixerUpper's generic conversion would.
+     *
+     * When {@code asDynamic} is true, array tags are always expanded into lists, since {@link ConfigurateOps}
+     * does not understand array values, and empty compounds and lists are set as empty maps and lists
+     * rather than being left empty.
+     *
+     * @param tag The tag to convert
+     * @param node The node to populate
+     * @param maxDepth The maximum nesting depth of tags, where the root tag is at depth 0
+     * @param asDynamic Whether to produce the same node as {@link com.mojang.datafixers.Dynamic#convert}
+     * @throws IOException If invalid tags are provided, or the tag is nested too deeply
+     */
+    static void tagToNode(Tag tag, ConfigurationNode node, int maxDepth, boolean asDynamic) throws IOException {
+        final ConversionStack<Tag, ConfigurationNode> stack = new ConversionStack<>();
+        stack.push(tag, node, 0);
+        while (!stack.isEmpty()) {
+            stack.pop();
+            final Tag current = stack.source;
+            final ConfigurationNode target = stack.destination;
+            final int depth = stack.depth;
+            checkDepth(depth, maxDepth);
+
+            // Children are pushed so they are popped in order, since nodes are attached to their parents in the order they are populated
+            switch (current.getType()) {
+                case TAG_COMPOUND: {
+                    final CompoundTag compoundTag = (CompoundTag) current;
+                    if (asDynamic && compoundTag.getSize() == 0) {
+                        target.setValue(Collections.emptyMap());
+                    }
+                    final int start = stack.size();
+                    for (String key : compoundTag.getKeys()) {
+                        stack.push(compoundTag.get(key), target.getNode(key), depth + 1);
+                    }
+                    stack.reverseFrom(start);
+                    break;
                 }
-            }
-        } else if (tag instanceof IntArrayTag) {
-            if (node.getOptions().acceptsType(int[].class)) {
-                node.setValue(((IntArrayTag) tag).getIntArray());
-            } else {
-                node.setValue(null);
-                for (int i : ((IntArrayTag) tag).getIntArray()) {
-                    node.appendListNode().setValue(i);
+                case TAG_LIST: {
+                    final ListTag listTag = (ListTag) current;
+                    if (asDynamic && listTag.isEmpty()) {
+                        target.setValue(Collections.emptyList());
+                    }
+                    final int start = stack.size();
+                    for (int i = 0; i < listTag.size(); ++i) {
+                        stack.push(listTag.get(i), target.appendListNode(), depth + 1);
+                    }
+                    stack.reverseFrom(start);
+                    break;
                 }
+                default:
+                    setScalar(current, target, asDynamic);
             }
+        }
+    }
 
-        } else if (tag instanceof LongArrayTag) {
-            if (node.getOptions().acceptsType(long[].class)) {
-                node.setValue(((LongArrayTag) tag).getLongArray());
-            } else {
-                node.setValue(null);
-                for (long l : ((LongArrayTag) tag).getLongArray()) {
-                    node.appendListNode().setValue(l);
-                }
-            }
-        } else if (tag instanceof EndTag) {
-            // no-op
+    private static void setScalar(Tag tag, ConfigurationNode node, boolean expandArrays) throws IOException {
+        switch (tag.getType()) {
+            case TAG_STRING:
+                node.setValue(tag.asString());
+                break;
+            case TAG_BYTE:
+                node.setValue(((ByteTag) tag).getByte());
+                break;
+            case TAG_SHORT:
+                node.setValue(((ShortTag) tag).getShort());
+                break;
+            case TAG_INT:
+                node.setValue(((IntTag) tag).getInt());
+                break;
+            case TAG_LONG:
+                node.setValue(((LongTag) tag).getLong());
+                break;
+            case TAG_FLOAT:
+                node.setValue(((FloatTag) tag).getFloat());
+                break;
+            case TAG_DOUBLE:
+                node.setValue(((DoubleTag) tag).getDouble());
+                break;
+            case TAG_BYTE_ARRAY:
+                setByteArray(node, ((ByteArrayTag) tag).getByteArray(), expandArrays);
+                break;
+            case TAG_INT_ARRAY:
+                setIntArray(node, ((IntArrayTag) tag).getIntArray(), expandArrays);
+                break;
+            case TAG_LONG_ARRAY:
+                setLongArray(node, ((LongArrayTag) tag).getLongArray(), expandArrays);
+                break;
+            case TAG_END:
+                // no-op
+                break;
+            default:
+                throw new UnsupportedTypeException("Unknown tag type: " + tag.getClass());
+        }
+    }
+
+    private static void checkDepth(int depth, int maxDepth) throws IOException {
+        if (depth > maxDepth) {
+            throw new IOException("Tried to convert NBT tag with too high complexity, depth > " + maxDepth);
+        }
+    }
+
+    /**
+     * Create a view over {@code tag} that converts entries to nodes only as they are accessed.
+     *
+     * @param tag The tag to view
+     * @return A new view
+     * @see CompoundTagView
+     */
+    public static CompoundTagView view(@NonNull CompoundTag tag) {
+        return view(tag, ConfigurationOptions.defaults().withSerializers(Confabricate.getMinecraftTypeSerializers()));
+    }
+
+    /**
+     * Create a view over {@code tag} that converts entries to nodes only as they are accessed.
+     *
+     * @param tag The tag to view
+     * @param options The options to create the view's nodes with
+     * @return A new view
+     * @see CompoundTagView
+     */
+    public static CompoundTagView view(@NonNull CompoundTag tag, @NonNull ConfigurationOptions options) {
+        return new CompoundTagView(requireNonNull(tag, "tag"), createEmptyNode(options));
+    }
+
+    /**
+     * Read a named tag in the binary NBT format from {@code input}, populating {@code node} directly
+     * without creating an intermediate tag.
+     *
+     * The tag's name is discarded. As with {@link #tagToNode(Tag, ConfigurationNode)}, array tags will
+     * be read as lists if the node does not support arrays.
+     *
+     * @param input The source to read from
+     * @param node The node to populate
+     * @throws IOException if the input could not be read or contains invalid data
+     */
+    public static void readNode(DataInput input, ConfigurationNode node) throws IOException {
+        readNode(input, node, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Read a named tag in the binary NBT format from {@code input}, rejecting tags nested more than
+     * {@code maxDepth} levels deep.
+     *
+     * As with {@link #tagToNode(Tag, ConfigurationNode, int)}, input is read using an explicit stack rather than recursion.
+     *
+     * @param input The source to read from
+     * @param node The node to populate
+     * @param maxDepth The maximum nesting depth of tags, where the root tag is at depth 0
+     * @throws IOException if the input could not be read, contains invalid data, or is nested too deeply
+     */
+    public static void readNode(DataInput input, ConfigurationNode node, int maxDepth) throws IOException {
+        readNode(input, node, maxDepth, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Read a named tag in the binary NBT format from {@code input}, rejecting tags nested more than
+     * {@code maxDepth} levels deep, or larger than {@code maxSize} bytes.
+     *
+     * The size of each tag is estimated as Minecraft does when reading NBT, and array lengths are checked
+     * against the limit before the array is allocated.
+     *
+     * @param input The source to read from
+     * @param node The node to populate
+     * @param maxDepth The maximum nesting depth of tags, where the root tag is at depth 0
+     * @param maxSize The maximum approximate size of the tag in memory, in bytes
+     * @throws IOException if the input could not be read, contains invalid data, is nested too deeply, or is too large
+     */
+    public static void readNode(DataInput input, ConfigurationNode node, int maxDepth, long maxSize) throws IOException {
+        NbtNodeReader.read(input, node, maxDepth, maxSize);
+    }
+
+    /**
+     * Read a named tag in the binary NBT format from a stream, populating {@code node} directly
+     * without creating an intermediate tag.
+     *
+     * The stream will not be closed.
+     *
+     * @param input The stream to read from
+     * @param node The node to populate
+     * @param compressed Whether the stream is GZIP-compressed, like Minecraft's {@code .dat} files
+     * @throws IOException if the input could not be read or contains invalid data
+     * @see #readNode(DataInput, ConfigurationNode)
+     */
+    public static void readNode(InputStream input, ConfigurationNode node, boolean compressed) throws IOException {
+        final InputStream source = compressed ? new GZIPInputStream(input) : input;
+        readNode(new DataInputStream(new BufferedInputStream(source)), node);
+    }
+
+    /**
+     * Write a node as a named tag in the binary NBT format, without creating an intermediate tag.
+     *
+     * The tag is written with an empty name. As with {@link #nodeToTag(ConfigurationNode)}, nodes that
+     * cannot be represented in NBT, such as lists with mixed element types, will cause an error.
+     * Each list is checked before it is written, but a value with an unsupported type is only found
+     * when it is reached, so {@code output} may hold a partial tag after an error. Write to a buffer or
+     * temporary file, as {@link NbtConfigurationLoader} does, when that matters.
+     *
+     * @param node The node to write
+     * @param output The destination to write to
+     * @throws IOException if the node could not be represented as NBT, or the output could not be written
+     */
+    public static void writeNode(ConfigurationNode node, DataOutput output) throws IOException {
+        writeNode(node, output, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Write a node as a named tag in the binary NBT format, rejecting nodes nested more than
+     * {@code maxDepth} levels deep.
+     *
+     * As with {@link #nodeToTag(ConfigurationNode, int)}, nodes are written using an explicit stack rather than recursion.
+     *
+     * @param node The node to write
+     * @param output The destination to write to
+     * @param maxDepth The maximum nesting depth of nodes, where the root node is at depth 0
+     * @throws IOException if the node could not be represented as NBT, is nested too deeply, or the output could not be written
+     */
+    public static void writeNode(ConfigurationNode node, DataOutput output, int maxDepth) throws IOException {
+        NbtNodeWriter.write(node, output, maxDepth);
+    }
+
+    /**
+     * Write a node as a named tag in the binary NBT format to a stream, without creating an intermediate tag.
+     *
+     * The stream will be flushed, but not closed.
+     *
+     * @param node The node to write
+     * @param output The stream to write to
+     * @param compressed Whether to GZIP-compress the output, like Minecraft's {@code .dat} files
+     * @throws IOException if the node could not be represented as NBT, or the output could not be written
+     * @see #writeNode(ConfigurationNode, DataOutput)
+     */
+    public static void writeNode(ConfigurationNode node, OutputStream output, boolean compressed) throws IOException {
+        final GZIPOutputStream compressor = compressed ? new GZIPOutputStream(output) : null;
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(compressor == null ? output : compressor));
+        writeNode(node, data);
+        data.flush();
+        if (compressor != null) {
+            compressor.finish();
+        }
+    }
+
+    // When arrays aren't accepted, the values are set as a list view over the array, to avoid copying into an intermediate boxed list
+    static void setByteArray(ConfigurationNode node, byte[] array) {
+        setByteArray(node, array, false);
+    }
+
+    private static void setByteArray(ConfigurationNode node, byte[] array, boolean expand) {
+        if (!expand && node.getOptions().acceptsType(byte[].class)) {
+            node.setValue(array);
         } else {
-            throw new IOException("Unknown tag type: " + tag.getClass());
+            node.setValue(Bytes.asList(array));
+        }
+    }
+
+    static void setIntArray(ConfigurationNode node, int[] array) {
+        setIntArray(node, array, false);
+    }
+
+    private static void setIntArray(ConfigurationNode node, int[] array, boolean expand) {
+        if (!expand && node.getOptions().acceptsType(int[].class)) {
+            node.setValue(array);
+        } else {
+            node.setValue(Ints.asList(array));
+        }
+    }
+
+    static void setLongArray(ConfigurationNode node, long[] array) {
+        setLongArray(node, array, false);
+    }
+
+    private static void setLongArray(ConfigurationNode node, long[] array, boolean expand) {
+        if (!expand && node.getOptions().acceptsType(long[].class)) {
+            node.setValue(array);
+        } else {
+            node.setValue(Longs.asList(array));
         }
     }
 
@@ -121,43 +424,252 @@ public class NbtNodeAdapter {
      * @throws IOException if an IO error occurs while converting the tag
      */
     public static Tag nodeToTag(ConfigurationNode node) throws IOException {
-        if (node.isMap()) {
-            CompoundTag tag = new CompoundTag();
-            for (Map.Entry<Object, ? extends ConfigurationNode> ent : node.getChildrenMap().entrySet()) {
-                tag.put(ent.getKey().toString(), nodeToTag(ent.getValue()));
+        return nodeToTag(node, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Convert a node to tag, rejecting nodes nested more than {@code maxDepth} levels deep.
+     *
+     * Conversion uses an explicit stack rather than recursion, so deep node trees will fail
+     * with an exception rather than overflowing the thread's stack.
+     *
+     * @param node The configuration node
+     * @param maxDepth The maximum nesting depth of nodes, where the root node is at depth 0
+     * @return The converted tag object
+     * @throws IOException if the node could not be represented as NBT, or is nested too deeply
+     */
+    public static Tag nodeToTag(ConfigurationNode node, int maxDepth) throws IOException {
+        return nodeToTag(node, maxDepth, false);
+    }
+
+    /**
+     * Convert a node to tag, optionally packing lists of numbers back into array tags.
+     *
+     * When {@code packArrays} is true, any non-empty list whose elements are all bytes, all ints, or all longs
+     * will become a {@link ByteArrayTag}, {@link IntArrayTag}, or {@link LongArrayTag}, reversing the expansion
+     * {@link #tagToNode(Tag, ConfigurationNode)} performs for nodes that do not accept array types.
+     * This is not the default, since some data (such as structure block positions) is stored as a list of int tags.
+     *
+     * @param node The configuration node
+     * @param maxDepth The maximum nesting depth of nodes, where the root node is at depth 0
+     * @param packArrays Whether to convert homogeneous lists of bytes, ints, or longs to array tags
+     * @return The converted tag object
+     * @throws IOException if the node could not be represented as NBT, or is nested too deeply
+     */
+    public static Tag nodeToTag(ConfigurationNode node, int maxDepth, boolean packArrays) throws IOException {
+        final Tag root = createTag(node, packArrays);
+        final ConversionStack<ConfigurationNode, Tag> stack = new ConversionStack<>();
+        stack.push(node, root, 0);
+        while (!stack.isEmpty()) {
+            stack.pop();
+            final ConfigurationNode current = stack.source;
+            final Tag target = stack.destination;
+            final int depth = stack.depth;
+            checkDepth(depth, maxDepth);
+
+            // Container tags are added to their parent as soon as they're created, so traversal order doesn't matter
+            if (target.getType() == TAG_COMPOUND) {
+                final CompoundTag compoundTag = (CompoundTag) target;
+                for (Map.Entry<Object, ? extends ConfigurationNode> ent : current.getChildrenMap().entrySet()) {
+                    final Tag child = createTag(ent.getValue(), packArrays);
+                    compoundTag.put(ent.getKey().toString(), child);
+                    if (isContainer(child)) {
+                        stack.push(ent.getValue(), child, depth + 1);
+                    }
+                }
+            } else if (target.getType() == TAG_LIST) {
+                final ListTag listTag = (ListTag) target;
+                for (ConfigurationNode child : current.getChildrenList()) {
+                    final Tag childTag = createTag(child, packArrays);
+                    if (!listTag.isEmpty() && childTag.getType() != listTag.getElementType()) {
+                        throw mixedListException(child);
+                    }
+                    listTag.add(childTag);
+                    if (isContainer(childTag)) {
+                        stack.push(child, childTag, depth + 1);
+                    }
+                }
             }
-            return tag;
+        }
+        return root;
+    }
+
+    /**
+     * Convert a node to tag, splitting large maps and lists across the common fork-join pool.
+     *
+     * @param node The configuration node
+     * @return The converted tag object
+     * @throws IOException if the node could not be represented as NBT, or is nested too deeply
+     * @see #nodeToTagParallel(ConfigurationNode, ForkJoinPool, int)
+     */
+    public static Tag nodeToTagParallel(ConfigurationNode node) throws IOException {
+        return nodeToTagParallel(node, ForkJoinPool.commonPool(), DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Convert a node to tag, splitting maps and lists with at least {@code threshold} children
+     * across {@code pool}. Smaller nodes are converted as in {@link #nodeToTag(ConfigurationNode)}.
+     *
+     * There is no parallel equivalent of {@link #tagToNode(Tag, ConfigurationNode)}, since nodes
+     * can only be attached to their parent from one thread.
+     *
+     * @param node The configuration node. It must not be modified by other threads during conversion
+     * @param pool The pool to execute conversion in
+     * @param threshold The minimum size of a node to convert in parallel
+     * @return The converted tag object
+     * @throws IOException if the node could not be represented as NBT, or is nested too deeply
+     */
+    public static Tag nodeToTagParallel(ConfigurationNode node, ForkJoinPool pool, int threshold) throws IOException {
+        return new ParallelNbtConverter(pool, threshold, DEFAULT_MAX_DEPTH).nodeToTag(node);
+    }
+
+    /**
+     * Create the exception for a list element whose type does not match the list's first element,
+     * so every conversion to NBT reports mixed lists the same way.
+     *
+     * @param child The mismatched element
+     * @return A new exception
+     */
+    static IOException mixedListException(ConfigurationNode child) {
+        return new IOException("NBT lists must only contain one type of element, but " + child.getValue()
+                + " at " + child.getKey() + " does not match the type of the first element");
+    }
+
+    private static boolean isContainer(Tag tag) {
+        return tag.getType() == TAG_COMPOUND || tag.getType() == TAG_LIST;
+    }
+
+    /**
+     * Create the tag for a single node. Scalars are converted completely, while
+     * maps and lists produce an empty container to be populated with children.
+     */
+    private static Tag createTag(ConfigurationNode node, boolean packArrays) throws IOException {
+        if (node.isMap()) {
+            return new CompoundTag();
         } else if (node.isList()) {
-            ListTag list = new ListTag();
-            for (ConfigurationNode child : node.getChildrenList()) {
-               list.add(nodeToTag(child));
-            }
-            return list;
+            final Tag packed = packArrays ? packArray(node.getChildrenList()) : null;
+            return packed == null ? new ListTag() : packed;
         } else {
             Object obj = node.getValue();
-            if (obj instanceof byte[]) {
-                return new ByteArrayTag((byte[]) obj);
-            } else if (obj instanceof int[]) {
-                return new IntArrayTag(((int[]) obj));
-            } else if (obj instanceof long[]) {
-                return new LongArrayTag((long[]) obj);
-            } else if (obj instanceof Byte) {
-                return ByteTag.of((Byte) obj);
-            } else if (obj instanceof Short) {
-                return ShortTag.of((Short) obj);
-            } else if (obj instanceof Integer) {
-                return IntTag.of((Integer) obj);
-            } else if (obj instanceof Long) {
-                return LongTag.of((Long) obj);
-            }  else if (obj instanceof Float) {
-                return FloatTag.of((Float) obj);
-            } else if (obj instanceof Double) {
-                return DoubleTag.of((Double) obj);
-            } else if (obj instanceof String) {
-                return StringTag.of((String) obj);
-            } else {
-                throw new IOException("Unsupported object type " + (obj == null ? null : obj.getClass()));
+            final Function<Object, Tag> converter = obj == null ? null : SCALAR_TO_TAG.get(obj.getClass());
+            if (converter == null) {
+                throw new UnsupportedTypeException("Unsupported object type " + (obj == null ? null : obj.getClass()));
+            }
+            return converter.apply(obj);
+        }
+    }
+
+    /**
+     * Attempt to pack a list of nodes into an array tag.
+     *
+     * @param children The list elements
+     * @return An array tag, or null if the elements are not all bytes, ints, or longs
+     */
+    private static @Nullable Tag packArray(List<? extends ConfigurationNode> children) {
+        if (children.isEmpty()) {
+            return null;
+        }
+        final Object first = children.get(0).getValue();
+        final Class<?> type = first == null ? null : first.getClass();
+        if (type != Byte.class && type != Integer.class && type != Long.class) {
+            return null;
+        }
+        for (ConfigurationNode child : children) {
+            final Object value = child.getValue();
+            if (value == null || value.getClass() != type) {
+                return null;
+            }
+        }
+
+        final int size = children.size();
+        if (type == Byte.class) {
+            final byte[] array = new byte[size];
+            for (int i = 0; i < size; ++i) {
+                array[i] = (Byte) children.get(i).getValue();
+            }
+            return new ByteArrayTag(array);
+        } else if (type == Integer.class) {
+            final int[] array = new int[size];
+            for (int i = 0; i < size; ++i) {
+                array[i] = (Integer) children.get(i).getValue();
             }
+            return new IntArrayTag(array);
+        } else {
+            final long[] array = new long[size];
+            for (int i = 0; i < size; ++i) {
+                array[i] = (Long) children.get(i).getValue();
+            }
+            return new LongArrayTag(array);
+        }
+    }
+
+    /**
+     * A stack of pending conversions, stored in parallel arrays to avoid allocating a frame for every element.
+     *
+     * @param <S> The source type
+     * @param <D> The destination type
+     */
+    private static final class ConversionStack<S, D> {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private Object[] sources = new Object[INITIAL_CAPACITY];
+        private Object[] destinations = new Object[INITIAL_CAPACITY];
+        private int[] depths = new int[INITIAL_CAPACITY];
+        private int size;
+
+        // The most recently popped frame
+        S source;
+        D destination;
+        int depth;
+
+        void push(S source, D destination, int depth) {
+            if (this.size == this.sources.length) {
+                final int newCapacity = this.size << 1;
+                this.sources = Arrays.copyOf(this.sources, newCapacity);
+                this.destinations = Arrays.copyOf(this.destinations, newCapacity);
+                this.depths = Arrays.copyOf(this.depths, newCapacity);
+            }
+            this.sources[this.size] = source;
+            this.destinations[this.size] = destination;
+            this.depths[this.size] = depth;
+            this.size++;
+        }
+
+        @SuppressWarnings("unchecked")
+        void pop() {
+            final int idx = --this.size;
+            this.source = (S) this.sources[idx];
+            this.destination = (D) this.destinations[idx];
+            this.depth = this.depths[idx];
+            this.sources[idx] = null;
+            this.destinations[idx] = null;
+        }
+
+        /**
+         * Reverse the order of all frames pushed since the stack had {@code start} elements.
+         */
+        void reverseFrom(int start) {
+            for (int i = start, j = this.size - 1; i < j; ++i, --j) {
+                swap(this.sources, i, j);
+                swap(this.destinations, i, j);
+                final int depth = this.depths[i];
+                this.depths[i] = this.depths[j];
+                this.depths[j] = depth;
+            }
+        }
+
+        private static void swap(Object[] array, int i, int j) {
+            final Object temp = array[i];
+            array[i] = array[j];
+            array[j] = temp;
+        }
+
+        int size() {
+            return this.size;
+        }
+
+        boolean isEmpty() {
+            return this.size == 0;
         }
     }
 
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate;
+
+import ninja.leaping.configurate.ConfigurationNode;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_BYTE;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_BYTE_ARRAY;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_COMPOUND;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_DOUBLE;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_END;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_FLOAT;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_INT;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_INT_ARRAY;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_LIST;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_LONG;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_LONG_ARRAY;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_SHORT;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_STRING;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.setByteArray;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.setIntArray;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.setLongArray;
+
+/**
+ * Decodes binary NBT directly into a configuration node.
+ *
+ * As with Minecraft's own {@code PositionTracker}, the approximate size of everything read is counted against
+ * a budget, which is checked before allocating arrays, so a corrupt length can not cause a huge allocation.
+ */
+final class NbtNodeReader {
+    private static final int TAG_SIZE = 8; // approximate cost of any tag, before its contents
+
+    private final DataInput input;
+    // Open containers are tracked on an explicit stack, so deeply nested input can not overflow the thread's stack
+    private final NbtFrameStack stack;
+    private final long maxSize;
+    private long size;
+
+    private NbtNodeReader(DataInput input, int maxDepth, long maxSize) {
+        this.input = input;
+        this.stack = new NbtFrameStack(maxDepth);
+        this.maxSize = maxSize;
+    }
+
+    static void read(DataInput input, ConfigurationNode node, int maxDepth, long maxSize) throws IOException {
+        final byte type = input.readByte();
+        if (type == TAG_END) {
+            return;
+        }
+        input.readUTF(); // root tag name
+        new NbtNodeReader(input, maxDepth, maxSize).read(type, node);
+    }
+
+    private void read(byte rootType, ConfigurationNode node) throws IOException {
+        final NbtFrameStack stack = this.stack;
+        readPayload(rootType, node);
+        while (!stack.isEmpty()) {
+            final ConfigurationNode parent = (ConfigurationNode) stack.value();
+            if (stack.type() == NbtFrameStack.COMPOUND) {
+                final byte childType = this.input.readByte();
+                if (childType == TAG_END) {
+                    stack.pop();
+                } else {
+                    final String key = readString();
+                    readPayload(childType, parent.getNode(key));
+                }
+            } else if (stack.takeRemaining()) {
+                readPayload(stack.type(), parent.appendListNode());
+            } else {
+                stack.pop();
+            }
+        }
+    }
+
+    /**
+     * Read the payload of a single tag. Scalars are read completely, while compounds and lists
+     * are pushed onto the stack to have their children read.
+     */
+    private void readPayload(byte type, ConfigurationNode node) throws IOException {
+        final DataInput input = this.input;
+        final NbtFrameStack stack = this.stack;
+        stack.checkDepth();
+        account(TAG_SIZE);
+        switch (type) {
+            case TAG_END:
+                break;
+            case TAG_BYTE:
+                node.setValue(input.readByte());
+                break;
+            case TAG_SHORT:
+                node.setValue(input.readShort());
+                break;
+            case TAG_INT:
+                node.setValue(input.readInt());
+                break;
+            case TAG_LONG:
+                node.setValue(input.readLong());
+                break;
+            case TAG_FLOAT:
+                node.setValue(input.readFloat());
+                break;
+            case TAG_DOUBLE:
+                node.setValue(input.readDouble());
+                break;
+            case TAG_STRING:
+                node.setValue(readString());
+                break;
+            case TAG_BYTE_ARRAY: {
+                final byte[] array = new byte[readLength(Byte.BYTES)];
+                input.readFully(array);
+                setByteArray(node, array);
+                break;
+            }
+            case TAG_INT_ARRAY: {
+                final int[] array = new int[readLength(Integer.BYTES)];
+                for (int i = 0; i < array.length; ++i) {
+                    array[i] = input.readInt();
+                }
+                setIntArray(node, array);
+                break;
+            }
+            case TAG_LONG_ARRAY: {
+                final long[] array = new long[readLength(Long.BYTES)];
+                for (int i = 0; i < array.length; ++i) {
+                    array[i] = input.readLong();
+                }
+                setLongArray(node, array);
+                break;
+            }
+            case TAG_LIST: {
+                final byte elementType = input.readByte();
+                final int length = readLength(0); // elements are counted as they are read
+                if (elementType == TAG_END && length > 0) {
+                    throw new IOException("Missing element type on list tag of length " + length);
+                }
+                stack.push(node, elementType, length);
+                break;
+            }
+            case TAG_COMPOUND:
+                stack.push(node, NbtFrameStack.COMPOUND, 0);
+                break;
+            default:
+                throw new IOException("Unknown tag type: " + type);
+        }
+    }
+
+    private String readString() throws IOException {
+        final String ret = this.input.readUTF();
+        account((long) ret.length() * Character.BYTES);
+        return ret;
+    }
+
+    /**
+     * Read the length of an array or list, accounting for the size of its elements before they are allocated.
+     *
+     * @param elementSize The size of each element in bytes
+     * @return The length
+     * @throws IOException if the length is negative, or the elements would exceed the size limit
+     */
+    private int readLength(int elementSize) throws IOException {
+        final int length = this.input.readInt();
+        if (length < 0) {
+            throw new IOException("Negative length " + length + " for NBT array or list");
+        }
+        account((long) length * elementSize);
+        return length;
+    }
+
+    private void account(long bytes) throws IOException {
+        this.size += bytes;
+        if (this.size > this.maxSize) {
+            throw new IOException("Tried to read NBT tag that was too big; tried to allocate more than " + this.maxSize + " bytes");
+        }
+    }
+}
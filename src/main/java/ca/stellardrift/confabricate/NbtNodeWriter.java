@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate;
+
+import com.google.common.collect.ImmutableMap;
+import ninja.leaping.configurate.ConfigurationNode;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_BYTE;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_BYTE_ARRAY;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_COMPOUND;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_DOUBLE;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_END;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_FLOAT;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_INT;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_INT_ARRAY;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_LIST;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_LONG;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_LONG_ARRAY;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_SHORT;
+import static ca.stellardrift.confabricate.NbtNodeAdapter.TAG_STRING;
+
+/**
+ * Encodes a configuration node directly as binary NBT.
+ */
+final class NbtNodeWriter {
+    private static final Map<Class<?>, Byte> SCALAR_TYPES = ImmutableMap.<Class<?>, Byte>builder()
+            .put(byte[].class, TAG_BYTE_ARRAY)
+            .put(int[].class, TAG_INT_ARRAY)
+            .put(long[].class, TAG_LONG_ARRAY)
+            .put(Byte.class, TAG_BYTE)
+            .put(Short.class, TAG_SHORT)
+            .put(Integer.class, TAG_INT)
+            .put(Long.class, TAG_LONG)
+            .put(Float.class, TAG_FLOAT)
+            .put(Double.class, TAG_DOUBLE)
+            .put(String.class, TAG_STRING)
+            .build();
+
+    private NbtNodeWriter() {
+    }
+
+    static void write(ConfigurationNode node, DataOutput output, int maxDepth) throws IOException {
+        final byte type = typeOf(node);
+        output.writeByte(type);
+        output.writeUTF(""); // root tag name
+
+        // Open containers are tracked on an explicit stack, so deeply nested nodes can not overflow the thread's stack
+        final NbtFrameStack stack = new NbtFrameStack(maxDepth);
+        writePayload(node, type, output, stack);
+        while (!stack.isEmpty()) {
+            final Iterator<?> children = (Iterator<?>) stack.value();
+            final byte elementType = stack.type();
+            if (!children.hasNext()) {
+                if (elementType == NbtFrameStack.COMPOUND) {
+                    output.writeByte(TAG_END);
+                }
+                stack.pop();
+            } else if (elementType == NbtFrameStack.COMPOUND) {
+                final Map.Entry<?, ?> ent = (Map.Entry<?, ?>) children.next();
+                final ConfigurationNode child = (ConfigurationNode) ent.getValue();
+                final byte childType = typeOf(child);
+                output.writeByte(childType);
+                output.writeUTF(ent.getKey().toString());
+                writePayload(child, childType, output, stack);
+            } else {
+                // Element types were checked before the list's header was written
+                writePayload((ConfigurationNode) children.next(), elementType, output, stack);
+            }
+        }
+    }
+
+    private static byte typeOf(ConfigurationNode node) throws IOException {
+        if (node.isMap()) {
+            return TAG_COMPOUND;
+        } else if (node.isList()) {
+            return TAG_LIST;
+        }
+        final Object value = node.getValue();
+        final Byte type = value == null ? null : SCALAR_TYPES.get(value.getClass());
+        if (type == null) {
+            throw new IOException("Unsupported object type " + (value == null ? null : value.getClass()));
+        }
+        return type;
+    }
+
+    /**
+     * Write the payload of a single tag. Scalars are written completely, while the children of
+     * compounds and lists are pushed onto the stack to be written in turn.
+     */
+    private static void writePayload(ConfigurationNode node, byte type, DataOutput output, NbtFrameStack stack) throws IOException {
+        stack.checkDepth();
+        switch (type) {
+            case TAG_COMPOUND:
+                stack.push(node.getChildrenMap().entrySet().iterator(), NbtFrameStack.COMPOUND, 0);
+                break;
+            case TAG_LIST: {
+                final List<? extends ConfigurationNode> children = node.getChildrenList();
+                final byte elementType = children.isEmpty() ? TAG_END : typeOf(children.get(0));
+                // Check every element before writing anything, so a mixed list is rejected without leaving a partial header
+                for (ConfigurationNode child : children) {
+                    if (typeOf(child) != elementType) {
+                        throw NbtNodeAdapter.mixedListException(child);
+                    }
+                }
+                output.writeByte(elementType);
+                output.writeInt(children.size());
+                stack.push(children.iterator(), elementType, children.size());
+                break;
+            }
+            case TAG_BYTE:
+                output.writeByte((Byte) node.getValue());
+                break;
+            case TAG_SHORT:
+                output.writeShort((Short) node.getValue());
+                break;
+            case TAG_INT:
+                output.writeInt((Integer) node.getValue());
+                break;
+            case TAG_LONG:
+                output.writeLong((Long) node.getValue());
+                break;
+            case TAG_FLOAT:
+                output.writeFloat((Float) node.getValue());
+                break;
+            case TAG_DOUBLE:
+                output.writeDouble((Double) node.getValue());
+                break;
+            case TAG_STRING:
+                output.writeUTF((String) node.getValue());
+                break;
+            case TAG_BYTE_ARRAY: {
+                final byte[] array = (byte[]) node.getValue();
+                output.writeInt(array.length);
+                output.write(array);
+                break;
+            }
+            case TAG_INT_ARRAY: {
+                final int[] array = (int[]) node.getValue();
+                output.writeInt(array.length);
+                for (int i : array) {
+                    output.writeInt(i);
+                }
+                break;
+            }
+            case TAG_LONG_ARRAY: {
+                final long[] array = (long[]) node.getValue();
+                output.writeInt(array.length);
+                for (long l : array) {
+                    output.writeLong(l);
+                }
+                break;
+            }
+            default:
+                throw new IOException("Unknown tag type: " + type);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate;
+
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+import ninja.leaping.configurate.ConfigurationNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Converts nodes to tags using a fork-join pool, for maps and lists large enough to benefit.
+ *
+ * Only this direction is supported. Tags are independent objects that can be assembled from any thread,
+ * but configuration nodes can not safely be attached to the same parent from multiple threads, and copying
+ * detached nodes into place would repeat the entire conversion on one thread.
+ */
+final class ParallelNbtConverter {
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final int maxDepth;
+
+    ParallelNbtConverter(ForkJoinPool pool, int threshold, int maxDepth) {
+        this.pool = pool;
+        this.threshold = threshold;
+        this.maxDepth = maxDepth;
+    }
+
+    Tag nodeToTag(ConfigurationNode node) throws IOException {
+        final Tag[] result = new Tag[1];
+        try {
+            this.pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    result[0] = convertNode(node, 0);
+                }
+            });
+        } catch (RuntimeException ex) {
+            throw unwrap(ex);
+        }
+        return result[0];
+    }
+
+    /**
+     * Convert a node into a tag. Must be called from within the pool.
+     *
+     * Large containers have their children converted in parallel. Small containers are descended into
+     * on the current thread, so large containers nested within them are still found, until reaching
+     * containers with only scalar children, which are converted sequentially.
+     */
+    private Tag convertNode(ConfigurationNode node, int depth) {
+        final List<? extends ConfigurationNode> children;
+        final List<Object> keys;
+        try {
+            if (depth > this.maxDepth) {
+                throw new IOException("Tried to convert NBT tag with too high complexity, depth > " + this.maxDepth);
+            }
+            if (node.isMap()) {
+                final Map<Object, ? extends ConfigurationNode> childrenMap = node.getChildrenMap();
+                keys = new ArrayList<>(childrenMap.keySet());
+                children = new ArrayList<>(childrenMap.values());
+            } else if (node.isList()) {
+                keys = null;
+                children = node.getChildrenList();
+            } else {
+                return NbtNodeAdapter.nodeToTag(node, this.maxDepth - depth);
+            }
+
+            if (children.size() < this.threshold && !hasContainer(children)) {
+                return NbtNodeAdapter.nodeToTag(node, this.maxDepth - depth);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        final Tag[] converted = new Tag[children.size()];
+        if (children.size() < this.threshold) {
+            for (int i = 0; i < converted.length; ++i) {
+                converted[i] = convertNode(children.get(i), depth + 1);
+            }
+        } else {
+            new RangeAction(index -> converted[index] = convertNode(children.get(index), depth + 1),
+                    0, children.size(), grain(children.size())).invoke();
+        }
+
+        if (keys == null) {
+            final ListTag list = new ListTag();
+            for (int i = 0; i < converted.length; ++i) {
+                if (i > 0 && converted[i].getType() != converted[0].getType()) {
+                    throw new UncheckedIOException(NbtNodeAdapter.mixedListException(children.get(i)));
+                }
+                list.add(converted[i]);
+            }
+            return list;
+        } else {
+            final CompoundTag compound = new CompoundTag();
+            for (int i = 0; i < converted.length; ++i) {
+                compound.put(keys.get(i).toString(), converted[i]);
+            }
+            return compound;
+        }
+    }
+
+    private static boolean hasContainer(List<? extends ConfigurationNode> children) {
+        for (ConfigurationNode child : children) {
+            if (child.isMap() || child.isList()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Choose a range size giving each worker a few tasks to balance load.
+     */
+    private int grain(int count) {
+        return Math.max(1, count / (this.pool.getParallelism() * 4));
+    }
+
+    private static IOException unwrap(RuntimeException ex) {
+        // Exceptions rethrown from other threads may be wrapped by the pool
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof UncheckedIOException) {
+                return ((UncheckedIOException) cause).getCause();
+            }
+        }
+        throw ex;
+    }
+
+    /**
+     * Performs an operation on each index in a range, splitting the range across the pool.
+     */
+    private static final class RangeAction extends RecursiveAction {
+        private final IntConsumer operation;
+        private final int start;
+        private final int end;
+        private final int grain;
+
+        RangeAction(IntConsumer operation, int start, int end, int grain) {
+            this.operation = operation;
+            this.start = start;
+            this.end = end;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start <= this.grain) {
+                for (int i = this.start; i < this.end; ++i) {
+                    this.operation.accept(i);
+                }
+            } else {
+                final int middle = (this.start + this.end) >>> 1;
+                invokeAll(new RangeAction(this.operation, this.start, middle, this.grain),
+                        new RangeAction(this.operation, middle, this.end, this.grain));
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate;
+
+import java.io.IOException;
+
+/**
+ * An exception raised when a value has no equivalent in the other representation,
+ * such as a node holding a boolean being converted to NBT.
+ *
+ * This is distinct from invalid or too deeply nested data, so {@link ConfigurateOps#convert(com.mojang.datafixers.Dynamic,
+ * com.mojang.datafixers.types.DynamicOps)} can fall back to a generic conversion only when that could succeed.
+ */
+final class UnsupportedTypeException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedTypeException(String message) {
+        super(message);
+    }
+}
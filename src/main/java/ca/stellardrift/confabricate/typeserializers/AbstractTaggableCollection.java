@@ -0,0 +1,181 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate.typeserializers;
+
+import com.google.common.collect.Iterators;
+import net.minecraft.util.registry.Registry;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+/**
+ * Shared implementation of {@link TaggableCollection}, in terms of a {@link Resolved resolved} snapshot
+ * of every member of the collection.
+ *
+ * @param <T> The type of element
+ */
+abstract class AbstractTaggableCollection<T> implements TaggableCollection<T> {
+    static final Object[] NO_ELEMENTS = new Object[0];
+
+    /**
+     * Get every element of this collection as of the current generation of tags.
+     *
+     * Implementations should return the same instance for as long as the contents of the collection
+     * do not change, so composite collections can tell when they need to be recomputed.
+     *
+     * @return The current elements
+     */
+    abstract Resolved resolved();
+
+    /**
+     * Get whether this collection is completely described by its specific elements and tags,
+     * so it can be written out as a list of ids.
+     *
+     * @return true if this collection can be serialized
+     */
+    boolean isRepresentableAsList() {
+        return true;
+    }
+
+    @Override
+    public boolean contains(T element) {
+        final int rawId = rawId(getContainingRegistry(), element);
+        if (rawId < 0) { // not registered, so can only have been added directly
+            return resolved().containsUnregistered(element);
+        }
+        return resolved().members.get(rawId);
+    }
+
+    @Override
+    public boolean containsAll(TaggableCollection<T> other) {
+        final Resolved self = resolved();
+        final Resolved that = internal(other).resolved();
+        final BitSet members = self.members;
+        for (int i = that.members.nextSetBit(0); i >= 0; i = that.members.nextSetBit(i + 1)) {
+            if (!members.get(i)) {
+                return false;
+            }
+        }
+        for (Object element : that.unregistered) {
+            if (!self.containsUnregistered(element)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public TaggableCollection<T> union(TaggableCollection<T> other) {
+        return new CompositeTaggableCollection<>(CompositeTaggableCollection.Operation.UNION, this, internal(other));
+    }
+
+    @Override
+    public TaggableCollection<T> intersection(TaggableCollection<T> other) {
+        return new CompositeTaggableCollection<>(CompositeTaggableCollection.Operation.INTERSECTION, this, internal(other));
+    }
+
+    @Override
+    public TaggableCollection<T> difference(TaggableCollection<T> other) {
+        return new CompositeTaggableCollection<>(CompositeTaggableCollection.Operation.DIFFERENCE, this, internal(other));
+    }
+
+    /**
+     * Iterate over every element of this collection, without duplicates.
+     *
+     * @return An iterator over the current elements
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Iterator<T> iterator() {
+        return (Iterator<T>) Iterators.forArray(resolved().elements);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Spliterator<T> spliterator() {
+        return (Spliterator<T>) Spliterators.spliterator(resolved().elements, Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * Get the raw id of an element, or -1 if it is not registered.
+     *
+     * Defaulted registries, such as those for blocks and items, report the raw id and identifier of their
+     * default entry for unregistered elements, so the raw id is checked by looking the entry back up.
+     *
+     * @param registry The registry
+     * @param element The element
+     * @param <T> The type of element
+     * @return The element's raw id, or -1
+     */
+    static <T> int rawId(Registry<T> registry, T element) {
+        final int rawId = registry.getRawId(element);
+        return rawId >= 0 && registry.get(rawId) == element ? rawId : -1;
+    }
+
+    AbstractTaggableCollection<T> internal(TaggableCollection<T> other) {
+        if (other.getContainingRegistry() != getContainingRegistry()) {
+            throw new IllegalArgumentException("Collections must contain elements of the same registry");
+        }
+        return adapt(other);
+    }
+
+    /**
+     * Get a collection implemented by this library with the same contents as {@code collection}.
+     *
+     * Collections from other implementations are copied, keeping their tags by id.
+     *
+     * @param collection The collection to adapt
+     * @param <T> The type of element
+     * @return A collection with the same contents
+     */
+    static <T> AbstractTaggableCollection<T> adapt(TaggableCollection<T> collection) {
+        if (collection instanceof AbstractTaggableCollection<?>) {
+            return (AbstractTaggableCollection<T>) collection;
+        }
+        return new TaggableCollectionImpl<>(collection.getContainingRegistry(), collection::getTagContainer,
+                collection.getSpecificElements(), collection.getTaggedElementIds());
+    }
+
+    /**
+     * A deduplicated snapshot of every element in a collection.
+     */
+    static final class Resolved {
+        final Object generation;
+        final BitSet members;
+        final Object[] elements;
+        // Elements not in the registry, which cannot be tracked by raw id. Almost always empty.
+        final Object[] unregistered;
+
+        Resolved(Object generation, BitSet members, Object[] elements, Object[] unregistered) {
+            this.generation = generation;
+            this.members = members;
+            this.elements = elements;
+            this.unregistered = unregistered;
+        }
+
+        boolean containsUnregistered(Object element) {
+            for (Object test : this.unregistered) {
+                if (test.equals(element)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
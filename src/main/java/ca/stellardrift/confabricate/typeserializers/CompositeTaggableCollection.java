@@ -0,0 +1,248 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate.typeserializers;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import net.minecraft.tag.Tag;
+import net.minecraft.tag.TagContainer;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.Registry;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The union, intersection, or difference of two collections.
+ *
+ * Operands are held by reference, so tags stay symbolic: the result is recomputed from the raw id bitsets
+ * of both operands whenever either of them changes, such as when tags are reloaded, and cached otherwise.
+ *
+ * A union keeps its operands symbolic: its specific elements and tags are those of both operands, so it can be
+ * serialized and {@link #edit() edited} like any other collection. Intersections and differences can not be
+ * expressed as a list of elements and tags, so their specific elements are every element they currently contain,
+ * and they have no tags of their own. Editing one flattens it into those elements, and they can not be serialized.
+ *
+ * @param <T> The type of element
+ */
+final class CompositeTaggableCollection<T> extends AbstractTaggableCollection<T> {
+    private final Operation operation;
+    private final AbstractTaggableCollection<T> left;
+    private final AbstractTaggableCollection<T> right;
+    private final Set<T> elementsView = new ElementsView();
+    private volatile Computed computed;
+
+    CompositeTaggableCollection(Operation operation, AbstractTaggableCollection<T> left, AbstractTaggableCollection<T> right) {
+        this.operation = requireNonNull(operation, "operation");
+        this.left = requireNonNull(left, "left");
+        this.right = requireNonNull(right, "right");
+    }
+
+    @Override
+    public Registry<T> getContainingRegistry() {
+        return left.getContainingRegistry();
+    }
+
+    @Override
+    public TagContainer<T> getTagContainer() {
+        return left.getTagContainer();
+    }
+
+    @Override
+    public Set<T> getSpecificElements() {
+        if (operation == Operation.UNION) {
+            return Sets.union(left.getSpecificElements(), right.getSpecificElements());
+        }
+        return elementsView;
+    }
+
+    @Override
+    public Set<Tag<T>> getTaggedElements() {
+        if (operation == Operation.UNION) {
+            return Sets.union(left.getTaggedElements(), right.getTaggedElements());
+        }
+        return ImmutableSet.of();
+    }
+
+    @Override
+    public Set<Identifier> getTaggedElementIds() {
+        if (operation == Operation.UNION) {
+            return Sets.union(left.getTaggedElementIds(), right.getTaggedElementIds());
+        }
+        return ImmutableSet.of();
+    }
+
+    @Override
+    boolean isRepresentableAsList() {
+        return operation == Operation.UNION && left.isRepresentableAsList() && right.isRepresentableAsList();
+    }
+
+    @Override
+    Resolved resolved() {
+        final Resolved left = this.left.resolved();
+        final Resolved right = this.right.resolved();
+        Computed ret = this.computed;
+        if (ret == null || ret.left != left || ret.right != right) {
+            ret = new Computed(left, right, compute(left, right));
+            this.computed = ret;
+        }
+        return ret.result;
+    }
+
+    private Resolved compute(Resolved left, Resolved right) {
+        final BitSet members = (BitSet) left.members.clone();
+        switch (operation) {
+            case UNION:
+                members.or(right.members);
+                break;
+            case INTERSECTION:
+                members.and(right.members);
+                break;
+            case DIFFERENCE:
+                members.andNot(right.members);
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+
+        final Object[] unregistered = computeUnregistered(left, right);
+        final Object[] elements = new Object[members.cardinality() + unregistered.length];
+        final Registry<T> registry = getContainingRegistry();
+        int idx = 0;
+        for (int i = members.nextSetBit(0); i >= 0; i = members.nextSetBit(i + 1)) {
+            elements[idx++] = registry.get(i);
+        }
+        System.arraycopy(unregistered, 0, elements, idx, unregistered.length);
+        return new Resolved(null, members, elements, unregistered);
+    }
+
+    private Object[] computeUnregistered(Resolved left, Resolved right) {
+        if (left.unregistered.length == 0 && (operation != Operation.UNION || right.unregistered.length == 0)) {
+            return NO_ELEMENTS;
+        }
+        final List<Object> ret = new ArrayList<>();
+        for (Object element : left.unregistered) {
+            if (operation == Operation.UNION || right.containsUnregistered(element) == (operation == Operation.INTERSECTION)) {
+                ret.add(element);
+            }
+        }
+        if (operation == Operation.UNION) {
+            for (Object element : right.unregistered) {
+                if (!left.containsUnregistered(element)) {
+                    ret.add(element);
+                }
+            }
+        }
+        return ret.toArray();
+    }
+
+    // Changes are applied to the operands, so they stay symbolic, a union stays representable as a list,
+    // and repeated changes do not build an ever longer chain of composites.
+    // A union adds to its right operand, while other operations can only add through a new union,
+    // whose right operand then receives any further additions.
+
+    @Override
+    public TaggableCollection<T> addingSingle(Identifier ident) {
+        if (operation == Operation.UNION) {
+            return withOperands(left, right.addingSingle(ident));
+        }
+        if (!getContainingRegistry().containsId(ident)) {
+            throw new NullPointerException("no such member of registry!");
+        }
+        final T element = getContainingRegistry().get(ident);
+        return union(new TaggableCollectionImpl<>(getContainingRegistry(), this::getTagContainer, ImmutableSet.of(element), ImmutableSet.of()));
+    }
+
+    @Override
+    public TaggableCollection<T> addingTag(Identifier tag) {
+        if (operation == Operation.UNION) {
+            return withOperands(left, right.addingTag(tag));
+        }
+        if (TaggableCollectionImpl.isUnknownTag(getTagContainer(), tag)) {
+            throw new NullPointerException("no such member of registry!");
+        }
+        return union(new TaggableCollectionImpl<>(getContainingRegistry(), this::getTagContainer, ImmutableSet.of(), ImmutableSet.of(tag)));
+    }
+
+    // As with a plain collection, removing an element or tag only removes it where it was added,
+    // so an element still reached through a tag of either operand remains a member
+
+    @Override
+    public TaggableCollection<T> removingSingle(Identifier ident) {
+        return withOperands(left.removingSingle(ident), operation == Operation.UNION ? right.removingSingle(ident) : right);
+    }
+
+    @Override
+    public TaggableCollection<T> removingTag(Identifier tag) {
+        return withOperands(left.removingTag(tag), operation == Operation.UNION ? right.removingTag(tag) : right);
+    }
+
+    private TaggableCollection<T> withOperands(TaggableCollection<T> left, TaggableCollection<T> right) {
+        if (left == this.left && right == this.right) {
+            return this;
+        }
+        return new CompositeTaggableCollection<>(operation, internal(left), internal(right));
+    }
+
+    enum Operation {
+        UNION,
+        INTERSECTION,
+        DIFFERENCE
+    }
+
+    /**
+     * A result, and the snapshots of each operand it was computed from.
+     */
+    private static final class Computed {
+        final Resolved left;
+        final Resolved right;
+        final Resolved result;
+
+        Computed(Resolved left, Resolved right, Resolved result) {
+            this.left = left;
+            this.right = right;
+            this.result = result;
+        }
+    }
+
+    /**
+     * A read-only view of the current elements of this collection.
+     */
+    private final class ElementsView extends AbstractSet<T> {
+        @Override
+        public Iterator<T> iterator() {
+            return CompositeTaggableCollection.this.iterator();
+        }
+
+        @Override
+        public int size() {
+            return resolved().elements.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            return o != null && CompositeTaggableCollection.this.contains((T) o);
+        }
+    }
+}
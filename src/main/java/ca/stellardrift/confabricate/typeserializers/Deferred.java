@@ -0,0 +1,181 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate.typeserializers;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.reflect.TypeToken;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.ConfigurationOptions;
+import ninja.leaping.configurate.objectmapping.ObjectMappingException;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A value that is read from configuration now, but resolved later.
+ *
+ * Configurations containing registry entries or {@link TaggableCollection TaggableCollections} can
+ * only be deserialized once every mod has registered its content. By declaring those values as
+ * {@code Deferred<T>}, a configuration can be loaded at any point, with only the raw identifiers
+ * stored until {@link #resolveAll()} is called once registration is complete.
+ *
+ * Handles are safe to create and resolve from multiple threads. Pending handles are only tracked
+ * weakly, so a handle that is no longer referenced will never be resolved.
+ *
+ * @param <T> The type of value
+ */
+public final class Deferred<T> {
+    private static final Set<Deferred<?>> PENDING = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
+
+    private final @Nullable TypeToken<T> type;
+    private final @Nullable ConfigurationOptions options;
+    private final Object[] path;
+    private final @Nullable Object source;
+    private volatile boolean resolved;
+    private volatile @Nullable T value;
+
+    /**
+     * Create a handle that is already resolved to {@code value}.
+     *
+     * @param value The value
+     * @param <T> The type of value
+     * @return A resolved handle
+     */
+    public static <T> Deferred<T> of(@Nullable T value) {
+        final Deferred<T> ret = new Deferred<>(null, null, new Object[0], null);
+        ret.value = value;
+        ret.resolved = true;
+        return ret;
+    }
+
+    /**
+     * Create a handle that will deserialize a value of {@code type} from the current contents of {@code node} when resolved.
+     */
+    static <T> Deferred<T> pending(TypeToken<T> type, ConfigurationNode node) {
+        final Deferred<T> ret = new Deferred<>(type, node.getOptions(), ValidationReport.pathOf(node), node.getValue());
+        PENDING.add(ret);
+        return ret;
+    }
+
+    /**
+     * Resolve every handle that has been read but not yet resolved.
+     *
+     * Problems found are collected as they would be by {@link ValidationReport#validate(ConfigurationNode, TypeToken)}.
+     * Handles with any problems, such as identifiers that have not been registered yet, remain pending,
+     * and may be resolved by a later call.
+     *
+     * @return A report of any problems encountered
+     */
+    public static ValidationReport<Void> resolveAll() {
+        return ValidationReport.collect(() -> {
+            for (Deferred<?> deferred : PENDING) {
+                for (ValidationReport.Problem problem : deferred.tryResolve()) {
+                    ValidationReport.record(problem.getPath(), ValidationReport.newException(problem.getMessage()));
+                }
+            }
+            return null;
+        });
+    }
+
+    private Deferred(@Nullable TypeToken<T> type, @Nullable ConfigurationOptions options, Object[] path, @Nullable Object source) {
+        this.type = type;
+        this.options = options;
+        this.path = path;
+        this.source = source;
+    }
+
+    /**
+     * Get whether this handle has been resolved.
+     *
+     * @return true if resolved
+     */
+    public boolean isResolved() {
+        return this.resolved;
+    }
+
+    /**
+     * Resolve this handle if it has not already been resolved.
+     *
+     * If any problem is found while deserializing, this handle remains pending.
+     *
+     * @return The resolved value
+     * @throws ObjectMappingException if the value could not be deserialized
+     */
+    public @Nullable T resolve() throws ObjectMappingException {
+        if (!this.resolved) {
+            final List<ValidationReport.Problem> problems = tryResolve();
+            if (!problems.isEmpty()) {
+                throw new ObjectMappingException("Could not resolve deferred value at " + Arrays.toString(this.path) + ": " + problems);
+            }
+        }
+        return this.value;
+    }
+
+    /**
+     * Attempt to resolve this handle, only marking it resolved if no problems were found.
+     *
+     * @return Any problems found
+     */
+    private synchronized List<ValidationReport.Problem> tryResolve() {
+        if (this.resolved) {
+            return Collections.emptyList();
+        }
+        final ConfigurationNode node = ConfigurationNode.root(this.options).getNode(this.path);
+        node.setValue(this.source);
+        final ValidationReport<T> report = ValidationReport.validate(node, this.type);
+        if (report.isValid()) {
+            this.value = report.getValue();
+            this.resolved = true;
+            PENDING.remove(this);
+        }
+        return report.getProblems();
+    }
+
+    /**
+     * Get the resolved value, resolving this handle first if necessary.
+     *
+     * @return The resolved value
+     * @throws IllegalStateException if the value could not be deserialized
+     */
+    public @Nullable T get() {
+        try {
+            return resolve();
+        } catch (ObjectMappingException ex) {
+            throw new IllegalStateException("Could not resolve deferred value at " + Arrays.toString(this.path), ex);
+        }
+    }
+
+    /**
+     * Write this handle to {@code node}. Values that were read from configuration are
+     * written back as they were read, whether or not they have been resolved.
+     */
+    void serialize(TypeToken<T> type, ConfigurationNode node) throws ObjectMappingException {
+        if (this.source != null) {
+            node.setValue(this.source);
+        } else {
+            node.setValue(type, this.value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Deferred{path=" + Arrays.toString(this.path) + ", value=" + (this.resolved ? this.value : "<unresolved>") + '}';
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate.typeserializers;
+
+import com.google.common.reflect.TypeToken;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.objectmapping.ObjectMappingException;
+import ninja.leaping.configurate.objectmapping.serialize.TypeSerializer;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.reflect.ParameterizedType;
+
+/**
+ * Serializes {@link Deferred} handles of any type, storing the node's value to be deserialized as the
+ * handle's type parameter when resolved.
+ */
+public final class DeferredSerializer implements TypeSerializer<Deferred<?>> {
+    public static final TypeToken<Deferred<?>> TOKEN = new TypeToken<Deferred<?>>() {};
+    public static final DeferredSerializer INSTANCE = new DeferredSerializer();
+
+    private DeferredSerializer() {
+    }
+
+    @Nullable
+    @Override
+    public Deferred<?> deserialize(@NonNull TypeToken<?> type, @NonNull ConfigurationNode value) throws ObjectMappingException {
+        if (value.isVirtual()) {
+            return null;
+        }
+        return Deferred.pending(valueType(type), value);
+    }
+
+    @Override
+    public void serialize(@NonNull TypeToken<?> type, @Nullable Deferred<?> obj, @NonNull ConfigurationNode value) throws ObjectMappingException {
+        if (obj == null) {
+            value.setValue(null);
+        } else {
+            serialize0(type, obj, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void serialize0(TypeToken<?> type, Deferred<T> obj, ConfigurationNode value) throws ObjectMappingException {
+        obj.serialize((TypeToken<T>) valueType(type), value);
+    }
+
+    private static TypeToken<?> valueType(TypeToken<?> type) throws ObjectMappingException {
+        if (!(type.getType() instanceof ParameterizedType)) {
+            throw new ObjectMappingException("Raw types are not supported for deferred values");
+        }
+        return type.resolveType(Deferred.class.getTypeParameters()[0]);
+    }
+}
@@ -16,6 +16,8 @@
 
 package ca.stellardrift.confabricate.typeserializers;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.reflect.TypeToken;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.InvalidIdentifierException;
@@ -47,10 +49,25 @@ public class IdentifierSerializer implements TypeSerializer<Identifier> {
     public static final IdentifierSerializer INSTANCE = new IdentifierSerializer();
     public static final TypeToken<Identifier> TOKEN = TypeToken.of(Identifier.class);
 
+    // Configurations tend to repeat the same identifiers many times, so share parsed instances.
+    // Identifiers are immutable, so a cached instance can be returned without validating the string again
+    private static final Cache<String, Identifier> IDENTIFIER_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(4096)
+            .build();
+    // Strings with a prefix before the identifier, kept separate so a prefixed string is never accepted as a plain identifier
+    private static final Cache<String, Identifier> PREFIXED_IDENTIFIER_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(1024)
+            .build();
+
     @Nullable
     @Override
     public Identifier deserialize(@NonNull TypeToken<?> type, @NonNull ConfigurationNode value) throws ObjectMappingException {
-        return fromNode(value);
+        try {
+            return fromNode(value);
+        } catch (ObjectMappingException ex) {
+            ValidationReport.recover(value, ex);
+            return null;
+        }
     }
 
     @Override
@@ -87,7 +104,7 @@ public class IdentifierSerializer implements TypeSerializer<Identifier> {
             if (val == null) {
                 throw listAcceptedFormats();
             }
-            return new Identifier(val);
+            return createIdentifier(val);
         }
     }
 
@@ -95,20 +112,49 @@ public class IdentifierSerializer implements TypeSerializer<Identifier> {
         try {
             return new Identifier(key, value);
         } catch (InvalidIdentifierException ex) {
-            throw new ObjectMappingException(ex);
+            throw ValidationReport.newException(ex.getMessage());
         }
     }
 
     static Identifier createIdentifier(String data) throws ObjectMappingException {
-        try {
-            return new Identifier(data);
-        } catch (InvalidIdentifierException ex) {
-            throw new ObjectMappingException(ex.getMessage());
+        Identifier ret = IDENTIFIER_CACHE.getIfPresent(data);
+        if (ret == null) {
+            try {
+                ret = new Identifier(data);
+            } catch (InvalidIdentifierException ex) {
+                throw ValidationReport.newException(ex.getMessage());
+            }
+            IDENTIFIER_CACHE.put(data, ret);
+        }
+        return ret;
+    }
+
+    /**
+     * Create an identifier from the part of {@code data} starting at {@code start}, such as
+     * the identifier of a tag after its {@code #} prefix.
+     *
+     * Cached identifiers are looked up by the full string, so no substring is created on a cache hit.
+     * Because of this, callers should only use this method for fixed-length prefixes.
+     *
+     * @param data The string containing an identifier
+     * @param start The index the identifier starts at
+     * @return The parsed identifier
+     * @throws ObjectMappingException if the string is not a valid identifier
+     */
+    static Identifier createIdentifier(String data, int start) throws ObjectMappingException {
+        if (start == 0) {
+            return createIdentifier(data);
+        }
+        Identifier ret = PREFIXED_IDENTIFIER_CACHE.getIfPresent(data);
+        if (ret == null) {
+            ret = createIdentifier(data.substring(start));
+            PREFIXED_IDENTIFIER_CACHE.put(data, ret);
         }
+        return ret;
     }
 
     private static ObjectMappingException listAcceptedFormats() {
-        return new ObjectMappingException("The provided item must be in [<namespace>:]<path> format");
+        return ValidationReport.newException("The provided item must be in [<namespace>:]<path> format");
     }
 
     static void toNode(Identifier ident, ConfigurationNode node) {
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate.typeserializers;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable hash set that shares structure between versions, as a hash array mapped trie.
+ *
+ * Adding or removing a single element copies only the path to that element, taking O(log n) time and space
+ * rather than copying the entire set. Operations that would not change the set return the same instance.
+ *
+ * Iteration order is unspecified. Null elements are not permitted.
+ *
+ * @param <E> The element type
+ */
+final class PersistentHashSet<E> extends AbstractSet<E> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int HASH_BITS = 32;
+    // A trie can have at most one level per fragment of the hash, plus a level for full collisions
+    private static final int MAX_DEPTH = (HASH_BITS + BITS - 1) / BITS + 1;
+
+    private static final PersistentHashSet<?> EMPTY = new PersistentHashSet<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    @SuppressWarnings("unchecked")
+    static <E> PersistentHashSet<E> of() {
+        return (PersistentHashSet<E>) EMPTY;
+    }
+
+    /**
+     * Create a set containing every element of {@code elements}.
+     *
+     * The trie is built directly, without creating any intermediate versions of the set.
+     *
+     * @param elements The source elements
+     * @param <E> The element type
+     * @return A set of the provided elements
+     */
+    @SuppressWarnings("unchecked")
+    static <E> PersistentHashSet<E> copyOf(Collection<? extends E> elements) {
+        if (elements instanceof PersistentHashSet) {
+            return (PersistentHashSet<E>) elements;
+        }
+        final Object[] unique = (elements instanceof Set ? elements : new LinkedHashSet<>(elements)).toArray();
+        if (unique.length == 0) {
+            return of();
+        }
+        final int[] hashes = new int[unique.length];
+        for (int i = 0; i < unique.length; ++i) {
+            hashes[i] = hash(unique[i]);
+        }
+        return new PersistentHashSet<>(build(unique, hashes, unique.length, 0), unique.length);
+    }
+
+    private PersistentHashSet(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    private static int hash(Object element) {
+        final int h = element.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static int fragment(int hash, int shift) {
+        return (hash >>> shift) & MASK;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean contains(@Nullable Object element) {
+        return element != null && this.root.contains(element, hash(element), 0);
+    }
+
+    /**
+     * Get a set containing the elements of this set and {@code element}.
+     *
+     * @param element The element to add
+     * @return A new set, or this set if it already contains the element
+     */
+    PersistentHashSet<E> plus(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        final Node newRoot = this.root.plus(element, hash(element), 0);
+        return newRoot == this.root ? this : new PersistentHashSet<>(newRoot, this.size + 1);
+    }
+
+    /**
+     * Get a set containing the elements of this set except {@code element}.
+     *
+     * @param element The element to remove
+     * @return A new set, or this set if it does not contain the element
+     */
+    PersistentHashSet<E> minus(@Nullable Object element) {
+        if (element == null) {
+            return this;
+        }
+        final Node newRoot = this.root.minus(element, hash(element), 0);
+        if (newRoot == this.root) {
+            return this;
+        }
+        return this.size == 1 ? of() : new PersistentHashSet<>(newRoot, this.size - 1);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new TrieIterator<>(this.root);
+    }
+
+    private static Node build(Object[] elements, int[] hashes, int count, int shift) {
+        if (shift >= HASH_BITS) {
+            return new CollisionNode(Arrays.copyOf(elements, count));
+        }
+
+        final int[] counts = new int[1 << BITS];
+        int bitmap = 0;
+        for (int i = 0; i < count; ++i) {
+            final int fragment = fragment(hashes[i], shift);
+            counts[fragment]++;
+            bitmap |= 1 << fragment;
+        }
+
+        final Object[] slots = new Object[Integer.bitCount(bitmap)];
+        int slot = 0;
+        for (int fragment = 0; fragment < counts.length; ++fragment) {
+            if (counts[fragment] == 0) {
+                continue;
+            }
+            final Object[] bucket = new Object[counts[fragment]];
+            final int[] bucketHashes = new int[counts[fragment]];
+            int idx = 0;
+            for (int i = 0; i < count; ++i) {
+                if (fragment(hashes[i], shift) == fragment) {
+                    bucket[idx] = elements[i];
+                    bucketHashes[idx++] = hashes[i];
+                }
+            }
+            slots[slot++] = idx == 1 ? bucket[0] : build(bucket, bucketHashes, idx, shift + BITS);
+        }
+        return new BitmapNode(bitmap, slots);
+    }
+
+    /**
+     * A node in the trie. Slots of a node are either elements or child nodes.
+     */
+    private abstract static class Node {
+        abstract boolean contains(Object element, int hash, int shift);
+
+        abstract Node plus(Object element, int hash, int shift);
+
+        abstract Node minus(Object element, int hash, int shift);
+
+        abstract Object[] slots();
+
+        /**
+         * Get the only element of this node, if it holds exactly one element and no children.
+         */
+        final @Nullable Object singleElement() {
+            final Object[] slots = slots();
+            return slots.length == 1 && !(slots[0] instanceof Node) ? slots[0] : null;
+        }
+    }
+
+    private static final class BitmapNode extends Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(this.bitmap & (bit - 1));
+        }
+
+        @Override
+        boolean contains(Object element, int hash, int shift) {
+            final int bit = 1 << fragment(hash, shift);
+            if ((this.bitmap & bit) == 0) {
+                return false;
+            }
+            final Object slot = this.slots[index(bit)];
+            if (slot instanceof Node) {
+                return ((Node) slot).contains(element, hash, shift + BITS);
+            }
+            return slot.equals(element);
+        }
+
+        @Override
+        Node plus(Object element, int hash, int shift) {
+            final int bit = 1 << fragment(hash, shift);
+            final int idx = index(bit);
+            if ((this.bitmap & bit) == 0) {
+                final Object[] newSlots = new Object[this.slots.length + 1];
+                System.arraycopy(this.slots, 0, newSlots, 0, idx);
+                newSlots[idx] = element;
+                System.arraycopy(this.slots, idx, newSlots, idx + 1, this.slots.length - idx);
+                return new BitmapNode(this.bitmap | bit, newSlots);
+            }
+
+            final Object slot = this.slots[idx];
+            final Object newSlot;
+            if (slot instanceof Node) {
+                newSlot = ((Node) slot).plus(element, hash, shift + BITS);
+                if (newSlot == slot) {
+                    return this;
+                }
+            } else if (slot.equals(element)) {
+                return this;
+            } else {
+                newSlot = merge(slot, hash(slot), element, hash, shift + BITS);
+            }
+            return withSlot(idx, newSlot);
+        }
+
+        @Override
+        Node minus(Object element, int hash, int shift) {
+            final int bit = 1 << fragment(hash, shift);
+            if ((this.bitmap & bit) == 0) {
+                return this;
+            }
+            final int idx = index(bit);
+            final Object slot = this.slots[idx];
+            if (slot instanceof Node) {
+                final Node newChild = ((Node) slot).minus(element, hash, shift + BITS);
+                if (newChild == slot) {
+                    return this;
+                }
+                // Keep the trie canonical by pulling single remaining elements up into this node
+                final Object single = newChild.singleElement();
+                return withSlot(idx, single != null ? single : newChild);
+            } else if (slot.equals(element)) {
+                final Object[] newSlots = new Object[this.slots.length - 1];
+                System.arraycopy(this.slots, 0, newSlots, 0, idx);
+                System.arraycopy(this.slots, idx + 1, newSlots, idx, newSlots.length - idx);
+                return new BitmapNode(this.bitmap & ~bit, newSlots);
+            }
+            return this;
+        }
+
+        private BitmapNode withSlot(int idx, Object value) {
+            final Object[] newSlots = this.slots.clone();
+            newSlots[idx] = value;
+            return new BitmapNode(this.bitmap, newSlots);
+        }
+
+        private static Node merge(Object first, int firstHash, Object second, int secondHash, int shift) {
+            if (shift >= HASH_BITS) {
+                return new CollisionNode(new Object[] {first, second});
+            }
+            final int firstFragment = fragment(firstHash, shift);
+            final int secondFragment = fragment(secondHash, shift);
+            if (firstFragment == secondFragment) {
+                return new BitmapNode(1 << firstFragment, new Object[] {merge(first, firstHash, second, secondHash, shift + BITS)});
+            } else if (firstFragment < secondFragment) {
+                return new BitmapNode((1 << firstFragment) | (1 << secondFragment), new Object[] {first, second});
+            } else {
+                return new BitmapNode((1 << firstFragment) | (1 << secondFragment), new Object[] {second, first});
+            }
+        }
+
+        @Override
+        Object[] slots() {
+            return this.slots;
+        }
+    }
+
+    /**
+     * A node holding elements whose hashes are entirely equal.
+     */
+    private static final class CollisionNode extends Node {
+        private final Object[] elements;
+
+        CollisionNode(Object[] elements) {
+            this.elements = elements;
+        }
+
+        private int indexOf(Object element) {
+            for (int i = 0; i < this.elements.length; ++i) {
+                if (this.elements[i].equals(element)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        boolean contains(Object element, int hash, int shift) {
+            return indexOf(element) != -1;
+        }
+
+        @Override
+        Node plus(Object element, int hash, int shift) {
+            if (indexOf(element) != -1) {
+                return this;
+            }
+            final Object[] newElements = Arrays.copyOf(this.elements, this.elements.length + 1);
+            newElements[this.elements.length] = element;
+            return new CollisionNode(newElements);
+        }
+
+        @Override
+        Node minus(Object element, int hash, int shift) {
+            final int idx = indexOf(element);
+            if (idx == -1) {
+                return this;
+            }
+            final Object[] newElements = new Object[this.elements.length - 1];
+            System.arraycopy(this.elements, 0, newElements, 0, idx);
+            System.arraycopy(this.elements, idx + 1, newElements, idx, newElements.length - idx);
+            return new CollisionNode(newElements);
+        }
+
+        @Override
+        Object[] slots() {
+            return this.elements;
+        }
+    }
+
+    /**
+     * A depth-first iterator over the elements of a trie.
+     */
+    private static final class TrieIterator<E> implements Iterator<E> {
+        private final Object[][] slots = new Object[MAX_DEPTH][];
+        private final int[] positions = new int[MAX_DEPTH];
+        private int depth;
+        private @Nullable Object next;
+
+        TrieIterator(Node root) {
+            this.slots[0] = root.slots();
+            advance();
+        }
+
+        private void advance() {
+            while (this.depth >= 0) {
+                final Object[] current = this.slots[this.depth];
+                if (this.positions[this.depth] == current.length) {
+                    this.depth--;
+                    continue;
+                }
+                final Object slot = current[this.positions[this.depth]++];
+                if (slot instanceof Node) {
+                    this.depth++;
+                    this.slots[this.depth] = ((Node) slot).slots();
+                    this.positions[this.depth] = 0;
+                } else {
+                    this.next = slot;
+                    return;
+                }
+            }
+            this.next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            final Object ret = this.next;
+            if (ret == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return (E) ret;
+        }
+    }
+}
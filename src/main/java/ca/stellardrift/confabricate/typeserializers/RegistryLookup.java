@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate.typeserializers;
+
+import com.google.common.collect.MapMaker;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.Registry;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lookup tables between the string form of identifiers and the entries of a registry, to avoid
+ * parsing an {@link Identifier} for every value read.
+ *
+ * Tables are built on first use, and rebuilt whenever the number of entries in the registry changes.
+ * Each entry found is checked against the registry by raw id, so an entry replaced in place
+ * (through {@link net.minecraft.util.registry.MutableRegistry#set(int, Identifier, Object)}) also causes a rebuild.
+ * Registries never remove entries, so these two checks cover every change.
+ * Strings are accepted both in full {@code namespace:path} format and, for the {@code minecraft}
+ * namespace, as a bare path. Any string not found in the table should be handled by parsing it as usual.
+ *
+ * @param <T> The type of registry entry
+ */
+final class RegistryLookup<T> {
+    private static final String NAMESPACE_MINECRAFT = "minecraft";
+    // Registries are never unloaded, and each lookup strongly references its registry, so weak keys would gain nothing
+    private static final Map<Registry<?>, RegistryLookup<?>> LOOKUPS = new MapMaker().makeMap();
+
+    private final Registry<T> registry;
+    // A live view for vanilla registries, held so checking the size does not create a new view on each lookup
+    private final Set<Identifier> ids;
+    private volatile Table<T> table;
+
+    @SuppressWarnings("unchecked")
+    static <T> RegistryLookup<T> of(Registry<T> registry) {
+        return (RegistryLookup<T>) LOOKUPS.computeIfAbsent(registry, RegistryLookup::new);
+    }
+
+    private RegistryLookup(Registry<T> registry) {
+        this.registry = registry;
+        this.ids = registry.getIds();
+    }
+
+    /**
+     * Get the entry registered with the identifier represented by {@code id}.
+     *
+     * @param id The string form of an identifier
+     * @return The registered entry, or null if {@code id} is not a registered identifier in normalized form
+     */
+    @Nullable T get(String id) {
+        Table<T> table = table();
+        int slot = table.find(id);
+        if (slot >= 0 && !table.isCurrent(this.registry, slot)) {
+            table = rebuild();
+            slot = table.find(id);
+        }
+        return slot < 0 ? null : table.value(slot);
+    }
+
+    /**
+     * Get the string form of the identifier {@code value} is registered under.
+     *
+     * @param value The registry entry
+     * @return The identifier, in {@code namespace:path} format, or null if the entry is not registered
+     */
+    @Nullable String getId(T value) {
+        Table<T> table = table();
+        Integer slot = table.reverse.get(value);
+        if (slot != null && !table.isCurrent(this.registry, slot)) {
+            table = rebuild();
+            slot = table.reverse.get(value);
+        }
+        return slot == null ? null : table.keys[slot];
+    }
+
+    private Table<T> table() {
+        final Table<T> ret = this.table;
+        if (ret == null || ret.registrySize != this.ids.size()) {
+            return rebuild();
+        }
+        return ret;
+    }
+
+    private Table<T> rebuild() {
+        final Table<T> ret = new Table<>(this.registry, this.ids);
+        this.table = ret;
+        return ret;
+    }
+
+    /**
+     * An immutable snapshot of a registry's contents.
+     *
+     * @param <T> The type of registry entry
+     */
+    private static final class Table<T> {
+        private final int registrySize;
+        private final String[] keys;
+        private final Object[] values;
+        private final int[] rawIds;
+        private final int mask;
+        private final IdentityHashMap<T, Integer> reverse; // entry to the slot of its full identifier
+
+        Table(Registry<T> registry, Set<Identifier> ids) {
+            this.registrySize = ids.size();
+            // Leave room for the bare path form of vanilla identifiers, and keep the load factor at or below 1/2
+            final int capacity = Integer.highestOneBit(Math.max(1, this.registrySize) * 4 - 1) << 1;
+            this.keys = new String[capacity];
+            this.values = new Object[capacity];
+            this.rawIds = new int[capacity];
+            this.mask = capacity - 1;
+            this.reverse = new IdentityHashMap<>(this.registrySize);
+
+            for (Identifier id : ids) {
+                final T value = registry.get(id);
+                if (value == null) {
+                    continue;
+                }
+                final int rawId = registry.getRawId(value);
+                final int slot = insert(id.toString(), value, rawId);
+                if (NAMESPACE_MINECRAFT.equals(id.getNamespace())) {
+                    insert(id.getPath(), value, rawId);
+                }
+                this.reverse.put(value, slot);
+            }
+        }
+
+        private static int hash(String key) {
+            final int h = key.hashCode();
+            return h ^ (h >>> 16);
+        }
+
+        private int insert(String key, T value, int rawId) {
+            int idx = hash(key) & this.mask;
+            while (this.keys[idx] != null) {
+                if (this.keys[idx].equals(key)) {
+                    return idx;
+                }
+                idx = (idx + 1) & this.mask;
+            }
+            this.keys[idx] = key;
+            this.values[idx] = value;
+            this.rawIds[idx] = rawId;
+            return idx;
+        }
+
+        int find(String key) {
+            int idx = hash(key) & this.mask;
+            String candidate;
+            while ((candidate = this.keys[idx]) != null) {
+                if (candidate.equals(key)) {
+                    return idx;
+                }
+                idx = (idx + 1) & this.mask;
+            }
+            return -1;
+        }
+
+        @SuppressWarnings("unchecked")
+        T value(int slot) {
+            return (T) this.values[slot];
+        }
+
+        /**
+         * Check that the entry in a slot is still the one registered under its raw id.
+         */
+        boolean isCurrent(Registry<T> registry, int slot) {
+            return registry.get(this.rawIds[slot]) == this.values[slot];
+        }
+    }
+}
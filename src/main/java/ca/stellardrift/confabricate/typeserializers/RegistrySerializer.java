@@ -27,20 +27,41 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 
 public class RegistrySerializer<T> implements TypeSerializer<T> {
     private final Registry<T> registry;
+    private final RegistryLookup<T> lookup;
 
     public RegistrySerializer(Registry<T> registry) {
         this.registry = registry;
+        this.lookup = RegistryLookup.of(registry);
     }
 
 
     @Nullable
     @Override
     public T deserialize(@NonNull TypeToken<?> type, @NonNull ConfigurationNode value) throws ObjectMappingException {
-        Identifier ident = IdentifierSerializer.fromNode(value);
+        if (!value.isList() && !value.isMap()) {
+            final String id = value.getString();
+            final T ret = id == null ? null : lookup.get(id);
+            if (ret != null) {
+                return ret;
+            }
+        }
+
+        final Identifier ident;
+        try {
+            ident = IdentifierSerializer.fromNode(value);
+        } catch (ObjectMappingException ex) {
+            ValidationReport.recover(value, ex);
+            return null;
+        }
         if (ident == null) {
             return null;
         }
 
+        // Defaulted registries return their default entry rather than null for unknown ids
+        if (!registry.containsId(ident)) {
+            ValidationReport.recover(value, ValidationReport.newException("Unknown member of registry " + ident));
+            return null;
+        }
         return registry.get(ident);
     }
 
@@ -48,9 +69,18 @@ public class RegistrySerializer<T> implements TypeSerializer<T> {
     public void serialize(@NonNull TypeToken<?> type, @Nullable T obj, @NonNull ConfigurationNode value) throws ObjectMappingException {
         if (obj == null) {
             value.setValue(null);
+            return;
         }
 
-        Identifier ident = registry.getId(obj);
-
+        final String id = lookup.getId(obj);
+        if (id != null) {
+            value.setValue(id);
+        } else {
+            final Identifier ident = registry.getId(obj);
+            if (ident == null) {
+                throw new ObjectMappingException("Unknown element " + obj);
+            }
+            IdentifierSerializer.toNode(ident, value);
+        }
     }
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate.typeserializers;
+
+import ninja.leaping.configurate.objectmapping.ObjectMappingException;
+
+/**
+ * An exception raised while validating, which does not capture a stack trace.
+ *
+ * Exceptions created while collecting a {@link ValidationReport} are only used to carry a message,
+ * so skipping the stack trace makes reporting many errors cheap.
+ */
+final class StacklessObjectMappingException extends ObjectMappingException {
+    private static final long serialVersionUID = 1L;
+
+    StacklessObjectMappingException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
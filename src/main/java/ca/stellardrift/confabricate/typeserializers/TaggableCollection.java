@@ -16,6 +16,7 @@
 
 package ca.stellardrift.confabricate.typeserializers;
 
+import com.google.common.collect.ImmutableSet;
 import net.minecraft.block.Block;
 import net.minecraft.entity.EntityType;
 import net.minecraft.fluid.Fluid;
@@ -28,40 +29,330 @@ import net.minecraft.tag.Tag;
 import net.minecraft.tag.TagContainer;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.registry.Registry;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A set of registry elements, made up of specific elements and tags.
+ *
+ * Collections created by this library index their members by raw id. Other implementations only need to
+ * provide the abstract methods, and the default methods are implemented in terms of those.
+ *
+ * @param <T> The type of element
+ */
 public interface TaggableCollection<T> extends Iterable<T> {
 
     static TaggableCollection<Block> ofBlocks(Set<Block> blocks, Set<Tag<Block>> blockTags) {
-        return new TaggableCollectionImpl<>(Registry.BLOCK, BlockTags.getContainer(), blocks, blockTags);
+        return new TaggableCollectionImpl<>(Registry.BLOCK, BlockTags::getContainer, blocks, TaggableCollectionImpl.tagIds(blockTags));
     }
 
     static TaggableCollection<EntityType<?>> ofEntityTypes(Set<EntityType<?>> single, Set<Tag<EntityType<?>>> tags) {
-        return new TaggableCollectionImpl<>(Registry.ENTITY_TYPE, EntityTypeTags.getContainer(), single, tags);
+        return new TaggableCollectionImpl<>(Registry.ENTITY_TYPE, EntityTypeTags::getContainer, single, TaggableCollectionImpl.tagIds(tags));
     }
 
     static TaggableCollection<Fluid> ofFluids(Set<Fluid> single, Set<Tag<Fluid>> tags) {
-        return new TaggableCollectionImpl<>(Registry.FLUID, FluidTags.getContainer(), single, tags);
+        return new TaggableCollectionImpl<>(Registry.FLUID, FluidTags::getContainer, single, TaggableCollectionImpl.tagIds(tags));
     }
 
     static TaggableCollection<Item> ofItems(Set<Item> single, Set<Tag<Item>> tags) {
-        return new TaggableCollectionImpl<>(Registry.ITEM, ItemTags.getContainer(), single, tags);
+        return new TaggableCollectionImpl<>(Registry.ITEM, ItemTags::getContainer, single, TaggableCollectionImpl.tagIds(tags));
     }
 
     static <T> TaggableCollection<T> of(Registry<T> registry, TagContainer<T> tagRegistry, Set<T> single, Set<Tag<T>> tags) {
+        requireNonNull(tagRegistry, "tagRegistry");
+        return new TaggableCollectionImpl<>(registry, () -> tagRegistry, single, TaggableCollectionImpl.tagIds(tags));
+    }
+
+    /**
+     * Create a collection that refers to tags by id.
+     *
+     * Tags are resolved against the container currently provided by {@code tagRegistry}, so the collection
+     * stays correct when tags are reloaded or the container is replaced. Pass a method reference such as
+     * {@code BlockTags::getContainer} rather than a fixed container.
+     *
+     * @param registry The registry elements are from
+     * @param tagRegistry A supplier of the current tag container
+     * @param single Specific elements of the collection
+     * @param tags Ids of tags in the collection
+     * @param <T> The type of element
+     * @return A new collection
+     */
+    static <T> TaggableCollection<T> of(Registry<T> registry, Supplier<TagContainer<T>> tagRegistry, Set<T> single, Set<Identifier> tags) {
         return new TaggableCollectionImpl<>(registry, tagRegistry, single, tags);
     }
 
+    /**
+     * Create a builder for a new, empty collection.
+     *
+     * @param registry The registry elements are from
+     * @param tagRegistry The container to resolve tags from
+     * @param <T> The type of element
+     * @return A new builder
+     */
+    static <T> Builder<T> builder(Registry<T> registry, TagContainer<T> tagRegistry) {
+        requireNonNull(tagRegistry, "tagRegistry");
+        return new Builder<>(registry, () -> tagRegistry, null);
+    }
+
+    /**
+     * Create a builder for a new, empty collection, with tags resolved against the current tag container.
+     *
+     * @param registry The registry elements are from
+     * @param tagRegistry A supplier of the current tag container
+     * @param <T> The type of element
+     * @return A new builder
+     * @see #of(Registry, Supplier, Set, Set)
+     */
+    static <T> Builder<T> builder(Registry<T> registry, Supplier<TagContainer<T>> tagRegistry) {
+        return new Builder<>(registry, tagRegistry, null);
+    }
+
     Registry<T> getContainingRegistry();
     TagContainer<T> getTagContainer();
 
     Set<T> getSpecificElements();
     Set<Tag<T>> getTaggedElements();
 
+    /**
+     * Get the ids of every tag in this collection, including those that do not exist in the current tag container.
+     *
+     * @return The tag ids
+     */
+    default Set<Identifier> getTaggedElementIds() {
+        return ImmutableSet.copyOf(TaggableCollectionImpl.tagIds(getTaggedElements()));
+    }
+
+    /**
+     * Get whether an element is part of this collection, either directly or as a member of one of its tags.
+     *
+     * For collections created by this library, membership is indexed by registry raw id the first time this
+     * is called, and again after tags are reloaded, so other checks take constant time and do not allocate.
+     *
+     * @param element The element to check
+     * @return true if the element is in this collection
+     */
+    default boolean contains(T element) {
+        if (getSpecificElements().contains(element)) {
+            return true;
+        }
+        for (Tag<T> tag : getTaggedElements()) {
+            if (tag.contains(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get whether every element of another collection is also part of this collection.
+     *
+     * @param other A collection from the same registry
+     * @return true if this collection contains every element of {@code other}
+     * @throws IllegalArgumentException if {@code other} is from a different registry
+     */
+    default boolean containsAll(TaggableCollection<T> other) {
+        return AbstractTaggableCollection.adapt(this).containsAll(other);
+    }
+
+    /**
+     * Get a collection of every element that is in either this collection or {@code other}.
+     *
+     * The result is computed lazily and refers to both collections, rather than copying their elements,
+     * so any tags they contain are still resolved against the current tag container after a reload.
+     *
+     * @param other A collection from the same registry
+     * @return The union of both collections
+     * @throws IllegalArgumentException if {@code other} is from a different registry
+     */
+    default TaggableCollection<T> union(TaggableCollection<T> other) {
+        return AbstractTaggableCollection.adapt(this).union(other);
+    }
+
+    /**
+     * Get a collection of every element that is in both this collection and {@code other}.
+     *
+     * The result can not be expressed as a list of elements and tags, so it can not be serialized.
+     *
+     * @param other A collection from the same registry
+     * @return The intersection of both collections
+     * @throws IllegalArgumentException if {@code other} is from a different registry
+     * @see #union(TaggableCollection) for how the result is computed
+     */
+    default TaggableCollection<T> intersection(TaggableCollection<T> other) {
+        return AbstractTaggableCollection.adapt(this).intersection(other);
+    }
+
+    /**
+     * Get a collection of every element that is in this collection but not in {@code other}.
+     *
+     * The result can not be expressed as a list of elements and tags, so it can not be serialized.
+     *
+     * @param other A collection from the same registry
+     * @return This collection, excluding the elements of {@code other}
+     * @throws IllegalArgumentException if {@code other} is from a different registry
+     * @see #union(TaggableCollection) for how the result is computed
+     */
+    default TaggableCollection<T> difference(TaggableCollection<T> other) {
+        return AbstractTaggableCollection.adapt(this).difference(other);
+    }
+
+    /**
+     * Create a spliterator over every element of this collection, as of the current generation of tags.
+     *
+     * For collections created by this library, the spliterator is {@link Spliterator#SIZED sized},
+     * {@link Spliterator#DISTINCT distinct}, and splits evenly, so it is suitable for parallel processing.
+     *
+     * @return A new spliterator
+     */
+    @Override
+    default Spliterator<T> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.DISTINCT);
+    }
+
+    /**
+     * Get a sequential stream of every element of this collection.
+     *
+     * @return A new stream
+     */
+    default Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Get a possibly parallel stream of every element of this collection.
+     *
+     * @return A new stream
+     */
+    default Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
     TaggableCollection<T> addingSingle(Identifier ident);
     TaggableCollection<T> addingTag(Identifier tag);
 
     TaggableCollection<T> removingSingle(Identifier ident);
     TaggableCollection<T> removingTag(Identifier tag);
+
+    /**
+     * Create a builder initialized with the contents of this collection, to make many changes at once.
+     *
+     * @return A new builder
+     */
+    default Builder<T> edit() {
+        return new Builder<>(getContainingRegistry(), this::getTagContainer, this);
+    }
+
+    /**
+     * A mutable builder for a {@link TaggableCollection}, applying any number of changes with a single immutable result.
+     *
+     * Identifiers are resolved as they are added. Any that are unknown are collected and reported together
+     * when the collection is built. Removing unknown identifiers has no effect. Tags are only checked once
+     * the tag container has been populated, and are otherwise resolved later.
+     *
+     * @param <T> The type of element
+     */
+    final class Builder<T> {
+        private final Registry<T> registry;
+        private final Supplier<TagContainer<T>> tags;
+        private final TaggableCollection<T> source;
+        private final Set<T> elements;
+        private final Set<Identifier> tagElements;
+        private final List<String> unknown = new ArrayList<>();
+        private boolean modified;
+
+        Builder(Registry<T> registry, Supplier<TagContainer<T>> tags, @Nullable TaggableCollection<T> source) {
+            this.registry = requireNonNull(registry, "registry");
+            this.tags = requireNonNull(tags, "tags");
+            this.source = source;
+            if (source == null) {
+                this.elements = new HashSet<>();
+                this.tagElements = new HashSet<>();
+            } else {
+                this.elements = new HashSet<>(source.getSpecificElements());
+                this.tagElements = new HashSet<>(source.getTaggedElementIds());
+            }
+        }
+
+        public Builder<T> add(T element) {
+            this.modified |= this.elements.add(requireNonNull(element, "element"));
+            return this;
+        }
+
+        public Builder<T> add(Identifier ident) {
+            if (this.registry.containsId(ident)) {
+                add(this.registry.get(ident));
+            } else {
+                this.unknown.add(ident.toString());
+            }
+            return this;
+        }
+
+        public Builder<T> addAll(Iterable<Identifier> idents) {
+            for (Identifier ident : idents) {
+                add(ident);
+            }
+            return this;
+        }
+
+        public Builder<T> addTag(Identifier tag) {
+            if (TaggableCollectionImpl.isUnknownTag(this.tags.get(), tag)) {
+                this.unknown.add("#" + tag);
+            } else {
+                this.modified |= this.tagElements.add(tag);
+            }
+            return this;
+        }
+
+        public Builder<T> remove(T element) {
+            this.modified |= this.elements.remove(element);
+            return this;
+        }
+
+        public Builder<T> remove(Identifier ident) {
+            if (this.registry.containsId(ident)) {
+                remove(this.registry.get(ident));
+            }
+            return this;
+        }
+
+        public Builder<T> removeAll(Iterable<Identifier> idents) {
+            for (Identifier ident : idents) {
+                remove(ident);
+            }
+            return this;
+        }
+
+        public Builder<T> removeTag(Identifier tag) {
+            this.modified |= this.tagElements.remove(tag);
+            return this;
+        }
+
+        /**
+         * Create a collection with the contents of this builder. The builder may continue to be used afterwards.
+         *
+         * @return A new collection, or the original collection if this builder was created by
+         *      {@link TaggableCollection#edit()} and no changes were made
+         * @throws IllegalArgumentException if any unknown elements or tags were added
+         */
+        public TaggableCollection<T> build() {
+            if (!this.unknown.isEmpty()) {
+                throw new IllegalArgumentException("Unknown elements or tags: " + this.unknown);
+            }
+            if (this.source != null && !this.modified) {
+                return this.source;
+            }
+            return new TaggableCollectionImpl<>(this.registry, this.tags, this.elements, this.tagElements);
+        }
+    }
 }
@@ -22,23 +22,62 @@ import net.minecraft.tag.TagContainer;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.registry.Registry;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
 
-class TaggableCollectionImpl<T> implements TaggableCollection<T> {
+class TaggableCollectionImpl<T> extends AbstractTaggableCollection<T> {
     private final Registry<T> registry;
-    private final TagContainer<T> tags;
+    private final Supplier<TagContainer<T>> tags;
 
-    private final Set<T> elements;
-    private final Set<Tag<T>> tagElements;
+    // Persistent sets, so adding or removing one element shares most of the structure of the original collection
+    private final PersistentHashSet<T> elements;
+    // Tags are held by id, and only resolved against whichever container is current
+    private final PersistentHashSet<Identifier> tagIds;
 
-    TaggableCollectionImpl(Registry<T> registry, TagContainer<T> tags, Set<T> elements, Set<Tag<T>> tagElements) {
+    // Every element, including members of tags, computed on first use and whenever tags are reloaded
+    private volatile Resolved resolved;
+    private volatile TaggedElements taggedElements;
+
+    TaggableCollectionImpl(Registry<T> registry, Supplier<TagContainer<T>> tags, Collection<T> elements, Collection<Identifier> tagIds) {
         this.registry = requireNonNull(registry, "registry");
         this.tags = requireNonNull(tags, "tags");
-        this.elements = ImmutableSet.copyOf(elements);
-        this.tagElements = ImmutableSet.copyOf(tagElements);
+        this.elements = PersistentHashSet.copyOf(elements);
+        this.tagIds = PersistentHashSet.copyOf(tagIds);
+    }
+
+    /**
+     * Get the ids of a collection of tags.
+     *
+     * @param tags The tags
+     * @return A list of each tag's id
+     */
+    static List<Identifier> tagIds(Collection<? extends Tag<?>> tags) {
+        final List<Identifier> ret = new ArrayList<>(tags.size());
+        for (Tag<?> tag : tags) {
+            ret.add(tag.getId());
+        }
+        return ret;
+    }
+
+    /**
+     * Get whether a tag id is known to not exist.
+     *
+     * Tags are loaded with data packs, after configurations are usually first read, so any tag is accepted
+     * while the container is still empty. It will be resolved once tags are available.
+     *
+     * @param container The tag container
+     * @param id The tag id
+     * @return Whether the tag is unknown to a populated container
+     */
+    static boolean isUnknownTag(TagContainer<?> container, Identifier id) {
+        return container.get(id) == null && !container.getEntries().isEmpty();
     }
 
     @Override
@@ -48,7 +87,7 @@ class TaggableCollectionImpl<T> implements TaggableCollection<T> {
 
     @Override
     public TagContainer<T> getTagContainer() {
-        return tags;
+        return tags.get();
     }
 
     @Override
@@ -58,84 +97,137 @@ class TaggableCollectionImpl<T> implements TaggableCollection<T> {
 
     @Override
     public Set<Tag<T>> getTaggedElements() {
-        return tagElements;
+        final Map<Identifier, Tag<T>> generation = tags.get().getEntries();
+        TaggedElements ret = this.taggedElements;
+        if (ret == null || ret.generation != generation) {
+            final ImmutableSet.Builder<Tag<T>> builder = ImmutableSet.builder();
+            for (Identifier id : tagIds) {
+                final Tag<T> tag = generation.get(id);
+                if (tag != null) {
+                    builder.add(tag);
+                }
+            }
+            ret = new TaggedElements(generation, builder.build());
+            this.taggedElements = ret;
+        }
+        return ret.tags;
     }
 
     @Override
-    public TaggableCollection<T> addingSingle(Identifier ident) {
-        T element = requireNonNull(registry.get(ident), "no such member of registry!");
-        if (!elements.contains(element)) {
-            return newCollection(ImmutableSet.<T>builder().addAll(elements).add(element).build(), null);
-        }
-        return this;
+    public Set<Identifier> getTaggedElementIds() {
+        return tagIds;
     }
 
+    /**
+     * Get the elements of this collection as of the current generation of tags.
+     *
+     * The tag container replaces its map of entries when tags are reloaded, and the current container
+     * may itself be replaced, such as when joining a server. Either way the identity of the map
+     * identifies a generation, and tags are looked up again by id.
+     *
+     * @return The current elements
+     */
     @Override
-    public TaggableCollection<T> addingTag(Identifier tag) {
-        Tag<T> element = requireNonNull(tags.get(tag), "no such member of registry!");
-        if (!tagElements.contains(element)) {
-            return newCollection(null, ImmutableSet.<Tag<T>>builder().addAll(tagElements).add(element).build());
+    Resolved resolved() {
+        final Map<Identifier, Tag<T>> generation = tags.get().getEntries();
+        Resolved ret = this.resolved;
+        if (ret == null || ret.generation != generation) {
+            ret = resolve(generation);
+            this.resolved = ret;
         }
-        return this;
+        return ret;
     }
 
-    @Override
-    public TaggableCollection<T> removingSingle(Identifier ident) {
-        ImmutableSet.Builder<T> newBuild = ImmutableSet.builder();
-        boolean changed = false;
+    /**
+     * Flatten this collection into a deduplicated snapshot. Specific elements come first,
+     * followed by the members of each tag. Tags not present in this generation are skipped.
+     */
+    private Resolved resolve(Map<Identifier, Tag<T>> generation) {
+        final BitSet members = new BitSet();
+        final List<Object> flattened = new ArrayList<>(elements.size());
+        List<Object> unregistered = null;
         for (T element : elements) {
-            if (!ident.equals(registry.getId(element))) {
-                newBuild.add(element);
-                changed = true;
+            final int rawId = rawId(registry, element);
+            if (rawId < 0) {
+                // Unregistered elements can only come from the set of specific elements, so they are already unique
+                if (unregistered == null) {
+                    unregistered = new ArrayList<>();
+                }
+                unregistered.add(element);
+                flattened.add(element);
+            } else if (!members.get(rawId)) {
+                members.set(rawId);
+                flattened.add(element);
             }
         }
-        return changed ? newCollection(newBuild.build(), null) : this;
+        for (Identifier id : tagIds) {
+            final Tag<T> tag = generation.get(id);
+            if (tag == null) {
+                continue;
+            }
+            for (T element : tag.values()) {
+                final int rawId = rawId(registry, element);
+                if (rawId >= 0 && !members.get(rawId)) {
+                    members.set(rawId);
+                    flattened.add(element);
+                }
+            }
+        }
+        return new Resolved(generation, members, flattened.toArray(), unregistered == null ? NO_ELEMENTS : unregistered.toArray());
     }
 
     @Override
-    public TaggableCollection<T> removingTag(Identifier tag) {
-        ImmutableSet.Builder<Tag<T>> newBuild = ImmutableSet.builder();
-        boolean changed = false;
-        for (Tag<T> element : tagElements) {
-            if (!tag.equals(element.getId())) {
-                newBuild.add(element);
-                changed = true;
-            }
+    public TaggableCollection<T> addingSingle(Identifier ident) {
+        // Defaulted registries return their default entry rather than null for unknown ids
+        if (!registry.containsId(ident)) {
+            throw new NullPointerException("no such member of registry!");
+        }
+        return newCollection(elements.plus(registry.get(ident)), tagIds);
+    }
+
+    @Override
+    public TaggableCollection<T> addingTag(Identifier tag) {
+        if (isUnknownTag(tags.get(), tag)) {
+            throw new NullPointerException("no such member of registry!");
         }
-        return changed ? newCollection(null, newBuild.build()) : this;
+        return newCollection(elements, tagIds.plus(tag));
     }
 
-    private TaggableCollectionImpl<T> newCollection(Set<T> elements, Set<Tag<T>> tagElements) {
-        return new TaggableCollectionImpl<>(registry, tags,
-                elements == null ? this.elements : elements,
-                tagElements == null ? this.tagElements : tagElements);
+    @Override
+    public TaggableCollection<T> removingSingle(Identifier ident) {
+        if (!registry.containsId(ident)) {
+            return this;
+        }
+        return newCollection(elements.minus(registry.get(ident)), tagIds);
     }
 
     @Override
-    public Iterator<T> iterator() {
-        return new TaggableCollectionIterator();
+    public TaggableCollection<T> removingTag(Identifier tag) {
+        return newCollection(elements, tagIds.minus(tag));
     }
 
-    class TaggableCollectionIterator implements Iterator<T> {
-        private Iterator<T> current;
-        private Iterator<Tag<T>> tags;
+    @Override
+    public Builder<T> edit() {
+        return new Builder<>(registry, tags, this);
+    }
 
-        TaggableCollectionIterator() {
-            current = elements.iterator();
-            tags = tagElements.iterator();
+    private TaggableCollectionImpl<T> newCollection(PersistentHashSet<T> elements, PersistentHashSet<Identifier> tagIds) {
+        if (elements == this.elements && tagIds == this.tagIds) {
+            return this;
         }
+        return new TaggableCollectionImpl<>(registry, tags, elements, tagIds);
+    }
 
-        @Override
-        public boolean hasNext() {
-            return current.hasNext() || tags.hasNext();
-        }
+    /**
+     * The tags of this collection that exist in one generation.
+     */
+    private final class TaggedElements {
+        final Map<Identifier, Tag<T>> generation;
+        final Set<Tag<T>> tags;
 
-        @Override
-        public T next() {
-            while (!current.hasNext()) {
-                current = tags.next().values().iterator();
-            }
-            return current.next();
+        TaggedElements(Map<Identifier, Tag<T>> generation, Set<Tag<T>> tags) {
+            this.generation = generation;
+            this.tags = tags;
         }
     }
 }
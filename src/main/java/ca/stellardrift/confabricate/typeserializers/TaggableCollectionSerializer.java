@@ -19,7 +19,6 @@ package ca.stellardrift.confabricate.typeserializers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.reflect.TypeToken;
-import net.minecraft.tag.Tag;
 import net.minecraft.tag.TagContainer;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.registry.Registry;
@@ -29,60 +28,91 @@ import ninja.leaping.configurate.objectmapping.serialize.TypeSerializer;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.Supplier;
+
 import static ca.stellardrift.confabricate.typeserializers.IdentifierSerializer.createIdentifier;
+import static java.util.Objects.requireNonNull;
 
 public class TaggableCollectionSerializer<T> implements TypeSerializer<TaggableCollection<T>> {
     private static final String TAG_PREFIX = "#";
     private final Registry<T> registry;
-    private final TagContainer<T> tagRegistry;
+    private final Supplier<TagContainer<T>> tagRegistry;
+    private final RegistryLookup<T> lookup;
 
     public TaggableCollectionSerializer(Registry<T> registry, TagContainer<T> tagRegistry) {
+        this(registry, () -> tagRegistry);
+        requireNonNull(tagRegistry, "tagRegistry");
+    }
+
+    /**
+     * Create a serializer for collections with tags resolved against the current tag container.
+     *
+     * Tags are stored by id in deserialized collections, so values stay correct after tags are reloaded.
+     *
+     * @param registry The registry elements are from
+     * @param tagRegistry A supplier of the current tag container
+     */
+    public TaggableCollectionSerializer(Registry<T> registry, Supplier<TagContainer<T>> tagRegistry) {
         this.registry = registry;
-        this.tagRegistry = tagRegistry;
+        this.tagRegistry = requireNonNull(tagRegistry, "tagRegistry");
+        this.lookup = RegistryLookup.of(registry);
     }
 
     @Nullable
     @Override
     public TaggableCollection<T> deserialize(@NonNull TypeToken<?> type, @NonNull ConfigurationNode value) throws ObjectMappingException {
         if (value.isMap()) {
-            throw new ObjectMappingException("Tags cannot be provided in map format");
+            ValidationReport.recover(value, ValidationReport.newException("Tags cannot be provided in map format"));
+            return null;
         }
 
         ImmutableSet.Builder<T> elements = ImmutableSet.builder();
-        ImmutableSet.Builder<Tag<T>> tagElements = ImmutableSet.builder();
+        ImmutableSet.Builder<Identifier> tagElements = ImmutableSet.builder();
 
         if (value.isList()) {
             for (ConfigurationNode node : value.getChildrenList()) {
-                handleSingle(node, elements, tagElements);
+                try {
+                    handleSingle(node, elements, tagElements);
+                } catch (ObjectMappingException ex) {
+                    ValidationReport.recover(node, ex);
+                }
             }
         } else {
-            handleSingle(value, elements, tagElements);
+            try {
+                handleSingle(value, elements, tagElements);
+            } catch (ObjectMappingException ex) {
+                ValidationReport.recover(value, ex);
+            }
         }
         return new TaggableCollectionImpl<>(registry, tagRegistry, elements.build(), tagElements.build());
     }
 
-    private void handleSingle(ConfigurationNode node, ImmutableSet.Builder<T> elements, ImmutableSet.Builder<Tag<T>> tagElements) throws ObjectMappingException {
-        boolean isTag = false;
-        String ident = String.valueOf(node.getValue());
-        if (ident.startsWith(TAG_PREFIX)) {
-            isTag = true;
-            ident = ident.substring(1);
+    private void handleSingle(ConfigurationNode node, ImmutableSet.Builder<T> elements, ImmutableSet.Builder<Identifier> tagElements) throws ObjectMappingException {
+        final String ident = String.valueOf(node.getValue());
+        final boolean isTag = ident.startsWith(TAG_PREFIX);
+        if (!isTag) {
+            final T element = lookup.get(ident);
+            if (element != null) {
+                elements.add(element);
+                return;
+            }
         }
-        Identifier id = createIdentifier(ident);
+        final Identifier id = createIdentifier(ident, isTag ? TAG_PREFIX.length() : 0);
 
         if (isTag) {
-            Tag<T> tag = tagRegistry.get(id);
-            if (tag == null) {
-                throw new ObjectMappingException("Unknown tag #" + id);
+            if (TaggableCollectionImpl.isUnknownTag(tagRegistry.get(), id)) {
+                throw ValidationReport.newException("Unknown tag #" + id);
             }
-            tagElements.add(tag);
+            tagElements.add(id);
 
         } else {
-            T element = registry.get(id);
-            if (element == null) {
-                throw new ObjectMappingException("Unknown member of registry " + id);
+            // Defaulted registries return their default entry rather than null for unknown ids
+            if (!registry.containsId(id)) {
+                throw ValidationReport.newException("Unknown member of registry " + id);
             }
-            elements.add(element);
+            elements.add(registry.get(id));
         }
     }
 
@@ -90,18 +120,41 @@ public class TaggableCollectionSerializer<T> implements TypeSerializer<TaggableC
 
     @Override
     public void serialize(@NonNull TypeToken<?> type, @Nullable TaggableCollection<T> obj, @NonNull ConfigurationNode value) throws ObjectMappingException {
+        if (obj instanceof AbstractTaggableCollection<?> && !((AbstractTaggableCollection<T>) obj).isRepresentableAsList()) {
+            throw new ObjectMappingException("Intersections and differences of collections can not be serialized, "
+                    + "since they can not be expressed as a list of elements and tags");
+        }
         value.setValue(ImmutableList.of());
         if (obj != null) {
-            for (T element : obj.getSpecificElements()) {
-                Identifier id = registry.getId(element);
+            // Collections iterate in an order that can change between launches, so sort by id to keep saved files stable
+            final Set<T> elements = obj.getSpecificElements();
+            final String[] elementIds = new String[elements.size()];
+            int i = 0;
+            for (T element : elements) {
+                String id = lookup.getId(element);
                 if (id == null) {
-                    throw new ObjectMappingException("Unknown element " + element);
+                    final Identifier ident = registry.getId(element);
+                    if (ident == null) {
+                        throw new ObjectMappingException("Unknown element " + element);
+                    }
+                    id = ident.toString();
                 }
-                IdentifierSerializer.toNode(id, value.appendListNode());
+                elementIds[i++] = id;
+            }
+            Arrays.sort(elementIds);
+            for (String id : elementIds) {
+                value.appendListNode().setValue(id);
             }
 
-            for (Tag<T> tag : obj.getTaggedElements()) {
-                value.appendListNode().setValue(TAG_PREFIX + tag.getId().toString());
+            final Set<Identifier> tags = obj.getTaggedElementIds();
+            final String[] tagIds = new String[tags.size()];
+            i = 0;
+            for (Identifier tag : tags) {
+                tagIds[i++] = tag.toString();
+            }
+            Arrays.sort(tagIds);
+            for (String tag : tagIds) {
+                value.appendListNode().setValue(TAG_PREFIX + tag);
             }
         }
 
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate.typeserializers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.objectmapping.ObjectMappingException;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The result of validating a node, containing every problem found rather than only the first.
+ *
+ * While a node is being validated, Confabricate's serializers record errors in the report and
+ * skip the invalid value instead of failing, so a single pass over a configuration will find every
+ * problem that they can detect. Errors from other serializers are still reported, but may stop
+ * deserialization of the object containing them.
+ *
+ * @param <T> The type of value validated
+ */
+public final class ValidationReport<T> {
+    private static final ThreadLocal<ValidationReport<?>> ACTIVE = new ThreadLocal<>();
+    private static final Object[] ROOT_PATH = new Object[0];
+
+    private final ImmutableList.Builder<Problem> problemsBuilder = ImmutableList.builder();
+    private @Nullable List<Problem> problems;
+    private @Nullable T value;
+
+    /**
+     * Deserialize a value from {@code node}, collecting all problems encountered.
+     *
+     * @param node The node to deserialize
+     * @param type The type of value to deserialize
+     * @param <T> The type of value to deserialize
+     * @return A report containing the deserialized value, with invalid elements omitted, and any problems
+     */
+    public static <T> ValidationReport<T> validate(@NonNull ConfigurationNode node, @NonNull TypeToken<T> type) {
+        requireNonNull(node, "node");
+        requireNonNull(type, "type");
+        return collect(() -> {
+            try {
+                return node.getValue(type);
+            } catch (ObjectMappingException ex) {
+                record(pathOf(node), ex);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Perform an action while collecting problems into a new report.
+     *
+     * @param action The action to perform
+     * @param <T> The type of value produced
+     * @return A report containing the action's result and any problems recovered from
+     */
+    static <T> ValidationReport<T> collect(Supplier<T> action) {
+        final ValidationReport<T> report = new ValidationReport<>();
+        final ValidationReport<?> previous = ACTIVE.get();
+        ACTIVE.set(report);
+        try {
+            report.value = action.get();
+        } finally {
+            if (previous == null) {
+                ACTIVE.remove();
+            } else {
+                ACTIVE.set(previous);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Create an exception for a problem with a value. While validating, this exception will not capture a stack trace.
+     *
+     * @param message The problem with the value
+     * @return A new exception
+     */
+    static ObjectMappingException newException(String message) {
+        return ACTIVE.get() == null ? new ObjectMappingException(message) : new StacklessObjectMappingException(message);
+    }
+
+    /**
+     * Handle a problem with {@code node}. While validating, the problem will be recorded and
+     * the caller should skip the value and continue. Otherwise, the exception is rethrown.
+     *
+     * @param node The node with a problem
+     * @param ex The exception describing the problem
+     * @throws ObjectMappingException if not validating
+     */
+    static void recover(ConfigurationNode node, ObjectMappingException ex) throws ObjectMappingException {
+        final ValidationReport<?> active = ACTIVE.get();
+        if (active == null) {
+            throw ex;
+        }
+        active.add(pathOf(node), ex);
+    }
+
+    /**
+     * Get the path of a node as it is reported in problems.
+     *
+     * Configurate gives a root node the path {@code [null]}, which is reported as an empty path instead.
+     *
+     * @param node The node
+     * @return The node's path
+     */
+    static Object[] pathOf(ConfigurationNode node) {
+        final Object[] path = node.getPath();
+        return path.length == 1 && path[0] == null ? ROOT_PATH : path;
+    }
+
+    /**
+     * Record a problem at {@code path} in the active report. Must only be called while collecting.
+     *
+     * @param path The path of the node with a problem
+     * @param ex The exception describing the problem
+     */
+    static void record(Object[] path, ObjectMappingException ex) {
+        final ValidationReport<?> active = ACTIVE.get();
+        if (active == null) {
+            throw new IllegalStateException("No validation is in progress");
+        }
+        active.add(path, ex);
+    }
+
+    private ValidationReport() {
+    }
+
+    private void add(Object[] path, ObjectMappingException ex) {
+        this.problemsBuilder.add(new Problem(path, ex.getMessage()));
+    }
+
+    /**
+     * Get the deserialized value.
+     *
+     * @return The value, which may be null or incomplete if problems were found
+     */
+    public @Nullable T getValue() {
+        return this.value;
+    }
+
+    /**
+     * Get every problem found during validation, in the order they were encountered.
+     *
+     * @return The problems found
+     */
+    public List<Problem> getProblems() {
+        if (this.problems == null) {
+            this.problems = this.problemsBuilder.build();
+        }
+        return this.problems;
+    }
+
+    /**
+     * Get whether validation completed without any problems.
+     *
+     * @return true if no problems were found
+     */
+    public boolean isValid() {
+        return getProblems().isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationReport{problems=" + getProblems() + '}';
+    }
+
+    /**
+     * A single problem found during validation.
+     */
+    public static final class Problem {
+        private final Object[] path;
+        private final String message;
+
+        Problem(Object[] path, String message) {
+            this.path = path;
+            this.message = message;
+        }
+
+        /**
+         * Get the path to the node with the problem, relative to the root of its configuration.
+         *
+         * @return The node's path
+         */
+        public Object[] getPath() {
+            return this.path.clone();
+        }
+
+        /**
+         * Get a description of the problem.
+         *
+         * @return The problem's message
+         */
+        public String getMessage() {
+            return this.message;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(this.path) + ": " + this.message;
+        }
+    }
+}
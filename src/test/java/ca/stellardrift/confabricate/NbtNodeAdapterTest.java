@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NbtNodeAdapterTest {
+
+    private static ConfigurationNode sampleNode() {
+        final ConfigurationNode node = ConfigurationNode.root();
+        node.getNode("byte").setValue((byte) 3);
+        node.getNode("short").setValue((short) -300);
+        node.getNode("int").setValue(70000);
+        node.getNode("long").setValue(Long.MAX_VALUE);
+        node.getNode("float").setValue(1.5f);
+        node.getNode("double").setValue(-2.25d);
+        node.getNode("string").setValue("hello, world");
+        node.getNode("bytes").setValue(new byte[] {1, 2, 3});
+        node.getNode("ints").setValue(new int[] {-1, 0, Integer.MAX_VALUE});
+        node.getNode("longs").setValue(new long[] {Long.MIN_VALUE, 5});
+        node.getNode("strings").setValue(Arrays.asList("a", "b", "c"));
+        node.getNode("nested", "child", "value").setValue(42);
+        node.getNode("compounds").appendListNode().getNode("x").setValue(1);
+        node.getNode("compounds").appendListNode().getNode("y").setValue("two");
+        final ConfigurationNode lists = node.getNode("lists");
+        lists.appendListNode().setValue(Arrays.asList(1, 2));
+        lists.appendListNode().setValue(Arrays.asList(3, 4, 5));
+        return node;
+    }
+
+    private static ConfigurationNode nested(int depth) {
+        final ConfigurationNode root = ConfigurationNode.root();
+        ConfigurationNode node = root;
+        for (int i = 0; i < depth; ++i) {
+            node = node.getNode("child");
+        }
+        node.setValue("leaf");
+        return root;
+    }
+
+    private static byte[] write(ConfigurationNode node) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NbtNodeAdapter.writeNode(node, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream input(byte[] data) {
+        return new DataInputStream(new ByteArrayInputStream(data));
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        final ConfigurationNode source = sampleNode();
+        final ConfigurationNode read = ConfigurationNode.root();
+        NbtNodeAdapter.readNode(input(write(source)), read);
+
+        assertEquals((byte) 3, read.getNode("byte").getValue());
+        assertEquals((short) -300, read.getNode("short").getValue());
+        assertEquals(70000, read.getNode("int").getValue());
+        assertEquals(Long.MAX_VALUE, read.getNode("long").getValue());
+        assertEquals(1.5f, read.getNode("float").getValue());
+        assertEquals(-2.25d, read.getNode("double").getValue());
+        assertEquals("hello, world", read.getNode("string").getValue());
+        assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) read.getNode("bytes").getValue());
+        assertArrayEquals(new int[] {-1, 0, Integer.MAX_VALUE}, (int[]) read.getNode("ints").getValue());
+        assertArrayEquals(new long[] {Long.MIN_VALUE, 5}, (long[]) read.getNode("longs").getValue());
+        assertEquals(Arrays.asList("a", "b", "c"), read.getNode("strings").getValue());
+        assertEquals(42, read.getNode("nested", "child", "value").getValue());
+        assertEquals(1, read.getNode("compounds", 0, "x").getValue());
+        assertEquals("two", read.getNode("compounds", 1, "y").getValue());
+        assertEquals(Arrays.asList(3, 4, 5), read.getNode("lists", 1).getValue());
+    }
+
+    @Test
+    public void testBinaryMatchesTagConversion() throws IOException {
+        final ConfigurationNode source = sampleNode();
+        final ConfigurationNode read = ConfigurationNode.root();
+        NbtNodeAdapter.readNode(input(write(source)), read);
+
+        assertEquals(NbtNodeAdapter.nodeToTag(source), NbtNodeAdapter.nodeToTag(read));
+    }
+
+    @Test
+    public void testWriteDepthLimit() throws IOException {
+        final ConfigurationNode deep = nested(NbtNodeAdapter.DEFAULT_MAX_DEPTH + 1);
+        assertThrows(IOException.class, () -> write(deep));
+        assertThrows(IOException.class, () -> NbtNodeAdapter.nodeToTag(deep));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NbtNodeAdapter.writeNode(deep, new DataOutputStream(bytes), NbtNodeAdapter.DEFAULT_MAX_DEPTH + 1);
+        assertTrue(bytes.size() > 0);
+    }
+
+    @Test
+    public void testReadDepthLimit() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NbtNodeAdapter.writeNode(nested(NbtNodeAdapter.DEFAULT_MAX_DEPTH + 1), new DataOutputStream(bytes), Integer.MAX_VALUE);
+        final byte[] data = bytes.toByteArray();
+
+        assertThrows(IOException.class, () -> NbtNodeAdapter.readNode(input(data), ConfigurationNode.root()));
+
+        final ConfigurationNode read = ConfigurationNode.root();
+        NbtNodeAdapter.readNode(input(data), read, NbtNodeAdapter.DEFAULT_MAX_DEPTH + 1);
+        final Object[] path = new Object[NbtNodeAdapter.DEFAULT_MAX_DEPTH + 1];
+        Arrays.fill(path, "child");
+        assertEquals("leaf", read.getNode(path).getValue());
+    }
+
+    @Test
+    public void testDeepNestingDoesNotOverflow() throws IOException {
+        final int depth = 10_000;
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NbtNodeAdapter.writeNode(nested(depth), new DataOutputStream(bytes), depth);
+        final ConfigurationNode read = ConfigurationNode.root();
+        NbtNodeAdapter.readNode(input(bytes.toByteArray()), read, depth);
+        assertTrue(read.getNode("child").isMap());
+    }
+
+    @Test
+    public void testRejectsUntypedListWithElements() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(NbtNodeAdapter.TAG_LIST);
+        out.writeUTF("");
+        out.writeByte(NbtNodeAdapter.TAG_END);
+        out.writeInt(Integer.MAX_VALUE);
+
+        assertThrows(IOException.class, () -> NbtNodeAdapter.readNode(input(bytes.toByteArray()), ConfigurationNode.root()));
+    }
+
+    @Test
+    public void testRejectsOversizedArray() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(NbtNodeAdapter.TAG_LONG_ARRAY);
+        out.writeUTF("");
+        out.writeInt(Integer.MAX_VALUE);
+
+        assertThrows(IOException.class, () -> NbtNodeAdapter.readNode(input(bytes.toByteArray()), ConfigurationNode.root()));
+    }
+
+    @Test
+    public void testSizeLimit() throws IOException {
+        final ConfigurationNode node = ConfigurationNode.root();
+        node.getNode("data").setValue(new byte[1024]);
+        final byte[] data = write(node);
+
+        assertThrows(IOException.class, () -> NbtNodeAdapter.readNode(input(data), ConfigurationNode.root(), NbtNodeAdapter.DEFAULT_MAX_DEPTH, 1024));
+        NbtNodeAdapter.readNode(input(data), ConfigurationNode.root(), NbtNodeAdapter.DEFAULT_MAX_DEPTH, 2048);
+    }
+
+    @Test
+    public void testMixedListRejectedBeforeWriting() throws IOException {
+        final ConfigurationNode node = ConfigurationNode.root();
+        node.appendListNode().setValue(1);
+        node.appendListNode().setValue("two");
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        final IOException written = assertThrows(IOException.class, () -> NbtNodeAdapter.writeNode(node, out));
+        // Only the root tag's type and name, without any of the list
+        assertEquals(3, bytes.size());
+
+        final IOException converted = assertThrows(IOException.class, () -> NbtNodeAdapter.nodeToTag(node));
+        assertEquals(converted.getMessage(), written.getMessage());
+    }
+}
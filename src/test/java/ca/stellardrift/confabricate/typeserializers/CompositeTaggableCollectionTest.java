@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate.typeserializers;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.reflect.TypeToken;
+import net.minecraft.Bootstrap;
+import net.minecraft.block.Block;
+import net.minecraft.block.Blocks;
+import net.minecraft.tag.Tag;
+import net.minecraft.tag.TagContainer;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.Registry;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.objectmapping.ObjectMappingException;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompositeTaggableCollectionTest {
+    private static final TypeToken<TaggableCollection<Block>> TYPE = new TypeToken<TaggableCollection<Block>>() {};
+    private static final Identifier STONES = new Identifier("confabricate", "stones");
+    private static final Identifier SOILS = new Identifier("confabricate", "soils");
+
+    private static TagContainer<Block> container;
+    private static TaggableCollectionSerializer<Block> serializer;
+
+    @BeforeAll
+    public static void setUp() {
+        Bootstrap.initialize();
+        container = new TagContainer<>(Registry.BLOCK::getOrEmpty, "", false, "block");
+        container.setEntries(ImmutableMap.of(
+                STONES, Tag.Builder.<Block>create().add(Blocks.STONE).add(Blocks.GRANITE).build(STONES),
+                SOILS, Tag.Builder.<Block>create().add(Blocks.DIRT).add(Blocks.GRASS_BLOCK).build(SOILS)));
+        serializer = new TaggableCollectionSerializer<>(Registry.BLOCK, () -> container);
+    }
+
+    private static TaggableCollection<Block> collection(List<Block> elements, List<Identifier> tags) {
+        return TaggableCollection.of(Registry.BLOCK, () -> container, ImmutableSet.copyOf(elements), ImmutableSet.copyOf(tags));
+    }
+
+    private static Object serialize(TaggableCollection<Block> collection) throws ObjectMappingException {
+        final ConfigurationNode node = ConfigurationNode.root();
+        serializer.serialize(TYPE, collection, node);
+        return node.getValue();
+    }
+
+    @Test
+    public void testUnionSerializesSymbolically() throws ObjectMappingException {
+        final TaggableCollection<Block> union = collection(Arrays.asList(Blocks.SAND), Arrays.asList(STONES))
+                .union(collection(Arrays.asList(Blocks.GLASS), Arrays.asList(SOILS)));
+
+        assertEquals(Arrays.asList("minecraft:glass", "minecraft:sand", "#confabricate:soils", "#confabricate:stones"), serialize(union));
+        assertTrue(union.contains(Blocks.GRANITE));
+        assertTrue(union.contains(Blocks.GLASS));
+        assertFalse(union.contains(Blocks.OAK_LOG));
+    }
+
+    @Test
+    public void testUnionRoundTrip() throws ObjectMappingException {
+        final TaggableCollection<Block> union = collection(Arrays.asList(Blocks.SAND), Arrays.asList(STONES))
+                .union(collection(Arrays.asList(Blocks.GLASS), Arrays.asList()));
+        final ConfigurationNode node = ConfigurationNode.root();
+        serializer.serialize(TYPE, union, node);
+
+        final TaggableCollection<Block> read = serializer.deserialize(TYPE, node);
+        assertEquals(ImmutableSet.of(Blocks.SAND, Blocks.GLASS), read.getSpecificElements());
+        assertEquals(ImmutableSet.of(STONES), read.getTaggedElementIds());
+    }
+
+    @Test
+    public void testDifferenceAndIntersectionNotSerializable() {
+        final TaggableCollection<Block> stones = collection(Arrays.asList(), Arrays.asList(STONES));
+        final TaggableCollection<Block> granite = collection(Arrays.asList(Blocks.GRANITE), Arrays.asList());
+
+        final TaggableCollection<Block> difference = stones.difference(granite);
+        assertTrue(difference.contains(Blocks.STONE));
+        assertFalse(difference.contains(Blocks.GRANITE));
+        assertThrows(ObjectMappingException.class, () -> serialize(difference));
+
+        final TaggableCollection<Block> intersection = stones.intersection(granite);
+        assertTrue(intersection.contains(Blocks.GRANITE));
+        assertFalse(intersection.contains(Blocks.STONE));
+        assertThrows(ObjectMappingException.class, () -> serialize(intersection));
+
+        // A union containing a difference can not be written out either
+        assertThrows(ObjectMappingException.class, () -> serialize(difference.union(granite)));
+    }
+
+    @Test
+    public void testRemovingFromUnionStaysSerializable() throws ObjectMappingException {
+        final TaggableCollection<Block> union = collection(Arrays.asList(Blocks.SAND), Arrays.asList(STONES))
+                .union(collection(Arrays.asList(Blocks.SAND, Blocks.GLASS), Arrays.asList(STONES)));
+
+        final TaggableCollection<Block> withoutSand = union.removingSingle(Registry.BLOCK.getId(Blocks.SAND));
+        assertFalse(withoutSand.contains(Blocks.SAND));
+        assertEquals(Arrays.asList("minecraft:glass", "#confabricate:stones"), serialize(withoutSand));
+
+        final TaggableCollection<Block> withoutStones = withoutSand.removingTag(STONES);
+        assertFalse(withoutStones.contains(Blocks.STONE));
+        assertEquals(Arrays.asList("minecraft:glass"), serialize(withoutStones));
+
+        assertSame(withoutStones, withoutStones.removingTag(STONES));
+    }
+
+    @Test
+    public void testAddingToUnionDoesNotNest() throws ObjectMappingException {
+        final TaggableCollection<Block> union = collection(Arrays.asList(Blocks.SAND), Arrays.asList())
+                .union(collection(Arrays.asList(Blocks.GLASS), Arrays.asList()));
+        final Identifier dirt = Registry.BLOCK.getId(Blocks.DIRT);
+
+        final TaggableCollection<Block> added = union.addingSingle(dirt).addingTag(STONES);
+        assertSame(added, added.addingSingle(dirt).addingTag(STONES));
+        assertTrue(added.contains(Blocks.DIRT));
+        assertTrue(added.contains(Blocks.GRANITE));
+        assertEquals(Arrays.asList("minecraft:dirt", "minecraft:glass", "minecraft:sand", "#confabricate:stones"), serialize(added));
+    }
+
+    @Test
+    public void testAddingUnknownFails() {
+        final TaggableCollection<Block> union = collection(Arrays.asList(Blocks.SAND), Arrays.asList())
+                .union(collection(Arrays.asList(Blocks.GLASS), Arrays.asList()));
+        final TaggableCollection<Block> difference = union.difference(collection(Arrays.asList(Blocks.GLASS), Arrays.asList()));
+        final Identifier unknown = new Identifier("confabricate", "not_a_block");
+
+        assertThrows(NullPointerException.class, () -> union.addingSingle(unknown));
+        assertThrows(NullPointerException.class, () -> difference.addingSingle(unknown));
+        assertThrows(NullPointerException.class, () -> difference.addingTag(unknown));
+    }
+}
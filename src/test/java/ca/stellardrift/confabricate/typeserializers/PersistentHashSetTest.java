@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 zml
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ca.stellardrift.confabricate.typeserializers;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PersistentHashSetTest {
+
+    /**
+     * A key with a chosen hash code, to force collisions.
+     */
+    private static final class Key {
+        private final int id;
+        private final int hash;
+
+        Key(int id, int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object other) {
+            return other instanceof Key && ((Key) other).id == this.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public String toString() {
+            return "Key{id=" + this.id + ", hash=" + this.hash + "}";
+        }
+    }
+
+    private static <E> void assertMatches(Set<E> expected, PersistentHashSet<E> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, actual);
+        final Set<E> iterated = new HashSet<>();
+        for (E element : actual) {
+            assertTrue(iterated.add(element), "Duplicate element " + element);
+        }
+        assertEquals(expected, iterated);
+    }
+
+    @Test
+    public void testPlusAndMinus() {
+        final PersistentHashSet<String> empty = PersistentHashSet.of();
+        assertTrue(empty.isEmpty());
+
+        final PersistentHashSet<String> one = empty.plus("a");
+        final PersistentHashSet<String> two = one.plus("b");
+        assertTrue(empty.isEmpty());
+        assertMatches(new HashSet<>(Arrays.asList("a")), one);
+        assertMatches(new HashSet<>(Arrays.asList("a", "b")), two);
+
+        final PersistentHashSet<String> removed = two.minus("a");
+        assertMatches(new HashSet<>(Arrays.asList("b")), removed);
+        assertMatches(new HashSet<>(Arrays.asList("a", "b")), two);
+        assertSame(PersistentHashSet.of(), removed.minus("b"));
+    }
+
+    @Test
+    public void testUnchangedReturnsSameInstance() {
+        final PersistentHashSet<String> set = PersistentHashSet.<String>of().plus("a").plus("b");
+        assertSame(set, set.plus("a"));
+        assertSame(set, set.minus("c"));
+        assertSame(set, set.minus(5));
+        assertNotSame(set, set.plus("c"));
+    }
+
+    @Test
+    public void testNullRejected() {
+        assertThrows(NullPointerException.class, () -> PersistentHashSet.of().plus(null));
+        assertFalse(PersistentHashSet.of().plus("a").contains(null));
+    }
+
+    @Test
+    public void testFullCollisions() {
+        final Key a = new Key(1, 42);
+        final Key b = new Key(2, 42);
+        final Key c = new Key(3, 42);
+
+        final PersistentHashSet<Key> set = PersistentHashSet.<Key>of().plus(a).plus(b).plus(c);
+        assertMatches(new HashSet<>(Arrays.asList(a, b, c)), set);
+        assertSame(set, set.plus(new Key(2, 42)));
+        assertFalse(set.contains(new Key(4, 42)));
+
+        final PersistentHashSet<Key> withoutB = set.minus(b);
+        assertMatches(new HashSet<>(Arrays.asList(a, c)), withoutB);
+        assertMatches(new HashSet<>(Arrays.asList(c)), withoutB.minus(a));
+        assertSame(PersistentHashSet.of(), withoutB.minus(a).minus(c));
+        assertSame(set, set.minus(new Key(4, 42)));
+    }
+
+    @Test
+    public void testPartialCollisions() {
+        // Hashes sharing their lowest ten bits, so elements are only told apart deeper in the trie
+        final Set<Key> expected = new HashSet<>();
+        PersistentHashSet<Key> set = PersistentHashSet.of();
+        for (int i = 0; i < 64; ++i) {
+            final Key key = new Key(i, (i << 10) | 7);
+            expected.add(key);
+            set = set.plus(key);
+        }
+        assertMatches(expected, set);
+
+        for (int i = 0; i < 64; i += 3) {
+            final Key key = new Key(i, (i << 10) | 7);
+            expected.remove(key);
+            set = set.minus(key);
+            assertFalse(set.contains(key));
+        }
+        assertMatches(expected, set);
+        assertMatches(expected, PersistentHashSet.copyOf(expected));
+    }
+
+    @Test
+    public void testCopyOf() {
+        final Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 1000; ++i) {
+            expected.add(i * 31);
+        }
+        final PersistentHashSet<Integer> copy = PersistentHashSet.copyOf(expected);
+        assertMatches(expected, copy);
+        assertSame(copy, PersistentHashSet.copyOf(copy));
+        assertSame(PersistentHashSet.of(), PersistentHashSet.copyOf(new HashSet<>()));
+        assertMatches(new HashSet<>(Arrays.asList("a", "b")), PersistentHashSet.copyOf(Arrays.asList("a", "b", "a")));
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashSet() {
+        final Random random = new Random(509);
+        final Set<Key> expected = new HashSet<>();
+        PersistentHashSet<Key> set = PersistentHashSet.of();
+        for (int i = 0; i < 10_000; ++i) {
+            // A small hash range makes both partial and full collisions common
+            final int id = random.nextInt(2048);
+            final Key key = new Key(id, id % 300);
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(key), set != (set = set.plus(key)));
+            } else {
+                assertEquals(expected.remove(key), set != (set = set.minus(key)));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        assertMatches(expected, set);
+    }
+
+    @Test
+    public void testIteratorExhaustion() {
+        final Iterator<String> it = PersistentHashSet.<String>of().plus("a").iterator();
+        assertTrue(it.hasNext());
+        assertEquals("a", it.next());
+        assertFalse(it.hasNext());
+        assertThrows(NoSuchElementException.class, it::next);
+    }
+}